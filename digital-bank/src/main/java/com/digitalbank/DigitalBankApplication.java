@@ -2,8 +2,10 @@ package com.digitalbank;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class DigitalBankApplication {
     public static void main(String[] args) {
         SpringApplication.run(DigitalBankApplication.class, args);
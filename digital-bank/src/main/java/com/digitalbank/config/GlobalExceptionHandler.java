@@ -4,6 +4,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.async.AsyncRequestNotUsableException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -26,4 +27,9 @@ public class GlobalExceptionHandler {
         response.put("error", "业务异常");
         return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
     }
+
+    // 客户端已断开（如告警事件流），响应无法再写入，不返回内容
+    @ExceptionHandler(AsyncRequestNotUsableException.class)
+    public void handleAsyncRequestNotUsable(AsyncRequestNotUsableException e) {
+    }
 }
\ No newline at end of file
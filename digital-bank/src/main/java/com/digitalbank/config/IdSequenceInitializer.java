@@ -0,0 +1,48 @@
+package com.digitalbank.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import java.util.List;
+
+// 主键从自增列改为号段表分配后，启动时把号段表推进到各表现有最大主键之后，
+// 避免已有数据库中新分配的主键与旧数据冲突
+@Slf4j
+@Component
+public class IdSequenceInitializer {
+    // 与实体上 @TableGenerator 的 allocationSize 保持一致
+    private static final int ALLOCATION_SIZE = 100;
+    private static final List<String> TABLES = List.of(
+            "users", "accounts", "transactions", "risk_control_records", "account_balance_slots",
+            "risk_record_outbox");
+
+    // 注入EntityManagerFactory保证在Hibernate建表之后执行
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void initialize() {
+        for (String table : TABLES) {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+            long floor = maxId + ALLOCATION_SIZE + 1;
+            int updated = jdbcTemplate.update(
+                    "UPDATE id_sequences SET next_val = ? WHERE sequence_name = ? AND next_val < ?",
+                    floor, table, floor);
+            if (updated == 0) {
+                Integer rows = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM id_sequences WHERE sequence_name = ?", Integer.class, table);
+                if (rows == 0) {
+                    jdbcTemplate.update("INSERT INTO id_sequences (sequence_name, next_val) VALUES (?, ?)",
+                            table, floor);
+                }
+            }
+            log.debug("主键号段{}已推进到{}之后", table, maxId);
+        }
+    }
+}
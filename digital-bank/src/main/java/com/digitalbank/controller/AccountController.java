@@ -2,6 +2,7 @@ package com.digitalbank.controller;
 
 import com.digitalbank.entity.Account;
 import com.digitalbank.service.AccountService;
+import com.digitalbank.service.HotAccountService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,6 +17,9 @@ public class AccountController {
     @Autowired
     private AccountService accountService;
 
+    @Autowired
+    private HotAccountService hotAccountService;
+
     @PostMapping("/create")
     public ResponseEntity<?> createAccount(@RequestBody Account account,
                                            @RequestParam String userId) {
@@ -66,4 +70,37 @@ public class AccountController {
             return ResponseEntity.badRequest().body(response);
         }
     }
+
+    @PostMapping("/{accountNumber}/split")
+    public ResponseEntity<?> splitAccount(@PathVariable String accountNumber,
+                                          @RequestParam(defaultValue = "8") int slots) {
+        try {
+            hotAccountService.promote(accountNumber, slots);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "账户已拆分为" + slots + "个余额分槽");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    @PostMapping("/{accountNumber}/consolidate")
+    public ResponseEntity<?> consolidateAccount(@PathVariable String accountNumber) {
+        try {
+            BigDecimal consolidated = hotAccountService.consolidate(accountNumber);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", consolidated);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
 }
\ No newline at end of file
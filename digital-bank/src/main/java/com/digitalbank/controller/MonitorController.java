@@ -0,0 +1,193 @@
+package com.digitalbank.controller;
+
+import com.digitalbank.ledger.LedgerEngine;
+import com.digitalbank.risk.RiskRuleEngine;
+import com.digitalbank.risk.ShadowRiskEvaluator;
+import com.digitalbank.risk.TransferGraph;
+import com.digitalbank.risk.TransferScorer;
+import com.digitalbank.risk.VelocityTracker;
+import com.digitalbank.risk.WatchList;
+import com.digitalbank.service.BalanceSnapshotService;
+import com.digitalbank.service.FailureJournal;
+import com.digitalbank.service.RiskAlertStream;
+import com.digitalbank.service.RiskCheckGuard;
+import com.digitalbank.service.RiskRecordWriter;
+import com.digitalbank.service.TransactionRollupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/monitor")
+@CrossOrigin(origins = "*")
+public class MonitorController {
+    @Autowired
+    private FailureJournal failureJournal;
+
+    @Autowired
+    private LedgerEngine ledgerEngine;
+
+    @Autowired
+    private VelocityTracker velocityTracker;
+
+    @Autowired
+    private WatchList watchList;
+
+    @Autowired
+    private RiskRuleEngine riskRuleEngine;
+
+    @Autowired
+    private RiskRecordWriter riskRecordWriter;
+
+    @Autowired
+    private TransferGraph transferGraph;
+
+    @Autowired
+    private ShadowRiskEvaluator shadowRiskEvaluator;
+
+    @Autowired
+    private RiskAlertStream riskAlertStream;
+
+    @Autowired
+    private RiskCheckGuard riskCheckGuard;
+
+    @Autowired
+    private TransferScorer transferScorer;
+
+    @Autowired
+    private TransactionRollupService transactionRollupService;
+
+    @Autowired
+    private BalanceSnapshotService balanceSnapshotService;
+
+    @GetMapping("/ledger")
+    public ResponseEntity<?> getLedgerStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", ledgerEngine.isEnabled());
+        stats.put("pendingCommands", ledgerEngine.pendingCommands());
+        stats.put("pendingWrites", ledgerEngine.pendingWrites());
+        stats.put("cachedAccounts", ledgerEngine.cachedAccounts());
+        stats.put("suspendedShards", ledgerEngine.suspendedShards());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", stats);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/failure-journal")
+    public ResponseEntity<?> getFailureJournalStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueDepth", failureJournal.getQueueDepth());
+        stats.put("dropped", failureJournal.getDropped());
+        stats.put("written", failureJournal.getWritten());
+        stats.put("writeErrors", failureJournal.getWriteErrors());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", stats);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/velocity")
+    public ResponseEntity<?> getVelocityStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("trackedAccounts", velocityTracker.getTrackedAccounts());
+        stats.put("untracked", velocityTracker.getUntracked());
+        stats.put("evicted", velocityTracker.getEvicted());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", stats);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/watchlist")
+    public ResponseEntity<?> getWatchListStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", watchList.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/risk-rules")
+    public ResponseEntity<?> getRiskRuleStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", riskRuleEngine.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/risk-records")
+    public ResponseEntity<?> getRiskRecordWriterStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("mode", riskRecordWriter.getMode());
+        stats.put("queueDepth", riskRecordWriter.getQueueDepth());
+        stats.put("dropped", riskRecordWriter.getDropped());
+        stats.put("written", riskRecordWriter.getWritten());
+        stats.put("writeErrors", riskRecordWriter.getWriteErrors());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", stats);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/transfer-graph")
+    public ResponseEntity<?> getTransferGraphStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", transferGraph.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/risk-shadow")
+    public ResponseEntity<?> getRiskShadowStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", shadowRiskEvaluator.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/risk-stream")
+    public ResponseEntity<?> getRiskStreamStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", riskAlertStream.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/risk-guard")
+    public ResponseEntity<?> getRiskGuardStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", riskCheckGuard.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/risk-model")
+    public ResponseEntity<?> getRiskModelStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", transferScorer.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/transaction-rollup")
+    public ResponseEntity<?> getTransactionRollupStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", transactionRollupService.getStats());
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/balance-snapshots")
+    public ResponseEntity<?> getBalanceSnapshotStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", balanceSnapshotService.getStats());
+        return ResponseEntity.ok(response);
+    }
+}
\ No newline at end of file
@@ -1,11 +1,19 @@
 package com.digitalbank.controller;
 
+import com.digitalbank.service.BalanceSnapshotService;
 import com.digitalbank.service.ReportService;
+import com.digitalbank.service.TransactionRollupService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -16,16 +24,25 @@ public class ReportController {
     @Autowired
     private ReportService reportService;
 
+    @Autowired
+    private TransactionRollupService transactionRollupService;
+
+    @Autowired
+    private BalanceSnapshotService balanceSnapshotService;
+
     @GetMapping("/daily")
     public ResponseEntity<?> getDailyReport(
             @RequestParam(required = false)
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "false") boolean includeTransactions,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
         try {
             if (date == null) {
                 date = LocalDate.now();
             }
 
-            Map<String, Object> report = reportService.getDailyReport(date);
+            Map<String, Object> report = reportService.getDailyReport(date, includeTransactions, cursor, size);
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("data", report);
@@ -56,4 +73,123 @@ public class ReportController {
             return ResponseEntity.badRequest().body(response);
         }
     }
+
+    // 指定时刻的账户余额，asOf为空时取当前时刻
+    @GetMapping("/balance")
+    public ResponseEntity<?> getBalanceAsOf(
+            @RequestParam String accountNumber,
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
+        try {
+            if (asOf == null) {
+                asOf = LocalDateTime.now();
+            }
+            Map<String, Object> data = new HashMap<>();
+            data.put("accountNumber", accountNumber);
+            data.put("asOf", asOf);
+            data.put("balance", balanceSnapshotService.balanceAsOf(accountNumber, asOf));
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", data);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // 生成指定日期的余额检查点，date为空时生成昨天的；之后已有检查点的日期一并重建
+    @PostMapping("/snapshots")
+    public ResponseEntity<?> createBalanceSnapshots(
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        try {
+            if (date == null) {
+                date = LocalDate.now().minusDays(1);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "余额检查点生成完成");
+            response.put("data", balanceSnapshotService.createSnapshots(date));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // 流式导出对账单，format为csv或ndjson；参数错误时返回JSON错误信息
+    @GetMapping("/statement/export")
+    public ResponseEntity<StreamingResponseBody> exportAccountStatement(
+            @RequestParam String accountNumber,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "csv") String format) {
+        StreamingResponseBody body = reportService.exportStatement(accountNumber, startDate, endDate, format);
+        String filename = "statement_" + accountNumber + "_" + startDate + "_" + endDate + "." + format;
+        return ResponseEntity.ok()
+                .contentType("csv".equals(format) ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(filename).build().toString())
+                .body(body);
+    }
+
+    @GetMapping("/summary")
+    public ResponseEntity<?> getSummary(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "false") boolean hourly) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", reportService.getSummary(startDate, endDate, hourly));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // 按原始交易重建日期范围内的汇总，用于回填历史数据或修复核对出的差异
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<?> rebuildRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "交易汇总重建完成");
+            response.put("data", transactionRollupService.rebuild(startDate, endDate));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    @GetMapping("/rollups/check")
+    public ResponseEntity<?> checkRollups(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", transactionRollupService.check(startDate, endDate));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
 }
\ No newline at end of file
@@ -1,40 +1,61 @@
 package com.digitalbank.controller;
 
+import com.digitalbank.dto.KeysetCursor;
+import com.digitalbank.entity.RiskControlRecord;
 import com.digitalbank.repository.RiskControlRecordRepository;
+import com.digitalbank.service.RiskAlertStream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/risk")
 @CrossOrigin(origins = "*")
 public class RiskControlController {
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final KeysetCursor FIRST = new KeysetCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
     @Autowired
     private RiskControlRecordRepository riskControlRecordRepository;
 
+    @Autowired
+    private RiskAlertStream riskAlertStream;
+
     @GetMapping("/records")
     public ResponseEntity<?> getRiskRecords(
             @RequestParam(required = false) String riskLevel,
-            @RequestParam(required = false) String status) {
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
         try {
-            Object records;
+            KeysetCursor before = KeysetCursor.parse(cursor, FIRST, null, null);
+            Pageable page = PageRequest.of(0, pageSize(size));
+            List<RiskControlRecord> records;
             if (riskLevel != null && status != null) {
-                records = riskControlRecordRepository.findAll().stream()
-                        .filter(r -> riskLevel.equals(r.getRiskLevel()) && status.equals(r.getStatus()))
-                        .toList();
+                records = riskControlRecordRepository.findPageByStatusAndRiskLevelBefore(
+                        status, riskLevel, before.getTime(), before.getId(), page);
             } else if (riskLevel != null) {
-                records = riskControlRecordRepository.findByRiskLevel(riskLevel);
+                records = riskControlRecordRepository.findPageByRiskLevelBefore(riskLevel, before.getTime(), before.getId(), page);
             } else if (status != null) {
-                records = riskControlRecordRepository.findByStatus(status);
+                records = riskControlRecordRepository.findPageByStatusBefore(status, before.getTime(), before.getId(), page);
             } else {
-                records = riskControlRecordRepository.findAll();
+                records = riskControlRecordRepository.findPageBefore(before.getTime(), before.getId(), page);
             }
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("data", records);
+            response.put("nextCursor", KeysetCursor.next(records, page.getPageSize(), RiskControlRecord::getCreateTime, RiskControlRecord::getId));
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
@@ -45,13 +66,20 @@ public class RiskControlController {
     }
 
     @GetMapping("/today")
-    public ResponseEntity<?> getTodayRiskRecords() {
+    public ResponseEntity<?> getTodayRiskRecords(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
         try {
-            var records = riskControlRecordRepository.findTodayRecords();
+            LocalDateTime today = LocalDate.now().atStartOfDay();
+            // 游标须落在今天，跨零点后沿用昨天的游标会翻到昨天的记录
+            KeysetCursor before = KeysetCursor.parse(cursor, FIRST, today, today.plusDays(1));
+            Pageable page = PageRequest.of(0, pageSize(size));
+            var records = riskControlRecordRepository.findPageSinceBefore(today, before.getTime(), before.getId(), page);
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("count", records.size());
+            response.put("count", riskControlRecordRepository.countByCreateTimeGreaterThanEqual(today));
             response.put("data", records);
+            response.put("nextCursor", KeysetCursor.next(records, page.getPageSize(), RiskControlRecord::getCreateTime, RiskControlRecord::getId));
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
@@ -61,6 +89,56 @@ public class RiskControlController {
         }
     }
 
+    @GetMapping("/counts")
+    public ResponseEntity<?> getRiskCounts() {
+        try {
+            Map<String, Long> byLevel = new HashMap<>();
+            Map<String, Long> byStatus = new HashMap<>();
+            List<Map<String, Object>> byLevelAndStatus = new ArrayList<>();
+            long total = 0;
+            for (Object[] row : riskControlRecordRepository.countByRiskLevelAndStatus()) {
+                String level = row[0] == null ? "UNKNOWN" : (String) row[0];
+                String status = (String) row[1];
+                long count = ((Number) row[2]).longValue();
+                byLevel.merge(level, count, Long::sum);
+                byStatus.merge(status, count, Long::sum);
+                Map<String, Object> item = new HashMap<>();
+                item.put("riskLevel", level);
+                item.put("status", status);
+                item.put("count", count);
+                byLevelAndStatus.add(item);
+                total += count;
+            }
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("total", total);
+            data.put("byLevel", byLevel);
+            data.put("byStatus", byStatus);
+            data.put("byLevelAndStatus", byLevelAndStatus);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", data);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // 告警事件流（text/event-stream），断线重连时浏览器自动带上Last-Event-ID补发错过的告警；
+    // 订阅数已满时返回503，EventSource收到非200响应不会自动重连
+    @GetMapping("/stream")
+    public ResponseEntity<SseEmitter> streamRiskAlerts(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        try {
+            return ResponseEntity.ok(riskAlertStream.subscribe(lastEventId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
     @PostMapping("/process/{recordId}")
     public ResponseEntity<?> processRiskRecord(@PathVariable Long recordId,
                                                @RequestParam String action,
@@ -90,4 +168,8 @@ public class RiskControlController {
             return ResponseEntity.badRequest().body(response);
         }
     }
-}
\ No newline at end of file
+
+    private int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+}
@@ -1,11 +1,22 @@
 package com.digitalbank.controller;
 
+import com.digitalbank.dto.TransactionDTO;
+import com.digitalbank.service.BatchTransactionService;
+import com.digitalbank.service.IdempotencyService;
 import com.digitalbank.service.TransactionService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.json.JsonMapper;
+import java.io.BufferedReader;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -15,10 +26,27 @@ public class TransactionController {
     @Autowired
     private TransactionService transactionService;
 
+    @Autowired
+    private BatchTransactionService batchTransactionService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    // 与JSON请求体使用同一个映射器，未知字段、日期格式等配置保持一致
+    @Autowired
+    private JsonMapper jsonMapper;
+
     @PostMapping("/deposit")
     public ResponseEntity<?> deposit(@RequestParam String accountNumber,
                                      @RequestParam BigDecimal amount,
-                                     @RequestParam(required = false) String description) {
+                                     @RequestParam(required = false) String description,
+                                     @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        String fingerprint = accountNumber + "|" + amount + "|" + description;
+        return idempotencyService.execute("deposit", idempotencyKey, fingerprint,
+                () -> doDeposit(accountNumber, amount, description));
+    }
+
+    private ResponseEntity<?> doDeposit(String accountNumber, BigDecimal amount, String description) {
         try {
             if (description == null) {
                 description = "存款";
@@ -33,14 +61,21 @@ public class TransactionController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
             response.put("message", "存款失败：" + e.getMessage());
-            return ResponseEntity.badRequest().body(response);
+            return ResponseEntity.status(failureStatus(e)).body(response);
         }
     }
 
     @PostMapping("/withdraw")
     public ResponseEntity<?> withdraw(@RequestParam String accountNumber,
                                       @RequestParam BigDecimal amount,
-                                      @RequestParam(required = false) String description) {
+                                      @RequestParam(required = false) String description,
+                                      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        String fingerprint = accountNumber + "|" + amount + "|" + description;
+        return idempotencyService.execute("withdraw", idempotencyKey, fingerprint,
+                () -> doWithdraw(accountNumber, amount, description));
+    }
+
+    private ResponseEntity<?> doWithdraw(String accountNumber, BigDecimal amount, String description) {
         try {
             if (description == null) {
                 description = "取款";
@@ -55,7 +90,7 @@ public class TransactionController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
             response.put("message", "取款失败：" + e.getMessage());
-            return ResponseEntity.badRequest().body(response);
+            return ResponseEntity.status(failureStatus(e)).body(response);
         }
     }
 
@@ -63,7 +98,15 @@ public class TransactionController {
     public ResponseEntity<?> transfer(@RequestParam String fromAccountNumber,
                                       @RequestParam String toAccountNumber,
                                       @RequestParam BigDecimal amount,
-                                      @RequestParam(required = false) String description) {
+                                      @RequestParam(required = false) String description,
+                                      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        String fingerprint = fromAccountNumber + "|" + toAccountNumber + "|" + amount + "|" + description;
+        return idempotencyService.execute("transfer", idempotencyKey, fingerprint,
+                () -> doTransfer(fromAccountNumber, toAccountNumber, amount, description));
+    }
+
+    private ResponseEntity<?> doTransfer(String fromAccountNumber, String toAccountNumber,
+                                         BigDecimal amount, String description) {
         try {
             if (description == null) {
                 description = "转账";
@@ -78,6 +121,50 @@ public class TransactionController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
             response.put("message", "转账失败：" + e.getMessage());
+            return ResponseEntity.status(failureStatus(e)).body(response);
+        }
+    }
+
+    // 可重试的临时失败返回503，幂等键不保存该结果
+    private HttpStatus failureStatus(Exception e) {
+        return idempotencyService.isTransient(e) ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.BAD_REQUEST;
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> batch(@RequestBody List<TransactionDTO> operations) {
+        return executeBatch(operations);
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> batchNdjson(HttpServletRequest request) {
+        // 每行一个JSON操作，按值流式解析，不先把整个请求体读成字符串
+        List<TransactionDTO> operations = new ArrayList<>();
+        try (BufferedReader reader = request.getReader();
+             MappingIterator<TransactionDTO> values = jsonMapper.readerFor(TransactionDTO.class).readValues(reader)) {
+            while (values.hasNextValue()) {
+                operations.add(values.nextValue());
+            }
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "批量请求解析失败：" + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+        return executeBatch(operations);
+    }
+
+    private ResponseEntity<?> executeBatch(List<TransactionDTO> operations) {
+        try {
+            Map<String, Object> result = batchTransactionService.execute(operations);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "批量处理完成");
+            response.put("data", result);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "批量处理失败：" + e.getMessage());
             return ResponseEntity.badRequest().body(response);
         }
     }
@@ -0,0 +1,58 @@
+package com.digitalbank.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+// 键集分页游标，格式：时间_主键，取上一页最后一条记录；
+// 游标由客户端回传，解析时校验其时间落在本次查询的范围内，防止拿别的日期或条件下的游标翻页
+public final class KeysetCursor {
+    private final LocalDateTime time;
+    private final Long id;
+
+    public KeysetCursor(LocalDateTime time, Long id) {
+        this.time = time;
+        this.id = id;
+    }
+
+    public LocalDateTime getTime() {
+        return time;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    // 游标为空时返回first；from为闭区间下限、to为开区间上限，为null表示不限
+    public static KeysetCursor parse(String cursor, KeysetCursor first, LocalDateTime from, LocalDateTime to) {
+        if (cursor == null || cursor.isBlank()) {
+            return first;
+        }
+        int separator = cursor.lastIndexOf('_');
+        KeysetCursor parsed;
+        try {
+            parsed = new KeysetCursor(LocalDateTime.parse(cursor.substring(0, separator)),
+                    Long.parseLong(cursor.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("无效的分页游标：" + cursor);
+        }
+        if ((from != null && parsed.time.isBefore(from)) || (to != null && !parsed.time.isBefore(to))) {
+            throw new RuntimeException("分页游标超出查询范围：" + cursor);
+        }
+        return parsed;
+    }
+
+    // 不满一页说明已经到底，不再返回游标
+    public static <T> String next(List<T> rows, int size, Function<T, LocalDateTime> time, Function<T, Long> id) {
+        if (rows.size() < size) {
+            return null;
+        }
+        T last = rows.get(rows.size() - 1);
+        return new KeysetCursor(time.apply(last), id.apply(last)).toString();
+    }
+
+    @Override
+    public String toString() {
+        return time + "_" + id;
+    }
+}
@@ -0,0 +1,40 @@
+package com.digitalbank.dto;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// 对账单行：查询时直接构造，不加载交易实体和关联账户
+@Data
+public class StatementLine {
+    private Long id;
+    private String transactionId;
+    private String transactionType;
+    private LocalDateTime transactionTime;
+    private String fromAccountNumber;
+    private String toAccountNumber;
+    private BigDecimal amount;
+    private BigDecimal fee;
+    private String currency;
+    private String status;
+    private String description;
+
+    // 该笔交易后的账户余额，由对账单逐笔累加得出
+    private BigDecimal balance;
+
+    public StatementLine(Long id, String transactionId, String transactionType, LocalDateTime transactionTime,
+                         String fromAccountNumber, String toAccountNumber, BigDecimal amount, BigDecimal fee,
+                         String currency, String status, String description) {
+        this.id = id;
+        this.transactionId = transactionId;
+        this.transactionType = transactionType;
+        this.transactionTime = transactionTime;
+        this.fromAccountNumber = fromAccountNumber;
+        this.toAccountNumber = toAccountNumber;
+        this.amount = amount;
+        this.fee = fee;
+        this.currency = currency;
+        this.status = status;
+        this.description = description;
+    }
+}
\ No newline at end of file
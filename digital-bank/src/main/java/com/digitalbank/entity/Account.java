@@ -10,7 +10,9 @@ import java.time.LocalDateTime;
 @Data
 public class Account {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "accounts_id")
+    @TableGenerator(name = "accounts_id", table = "id_sequences", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "accounts", allocationSize = 100)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -34,6 +36,8 @@ public class Account {
     @Column(nullable = false)
     private String status = "ACTIVE"; // ACTIVE, FROZEN, CLOSED
 
+    private Integer balanceSlots = 0; // 热点账户分槽数，0表示未拆分
+
     private LocalDateTime createTime = LocalDateTime.now();
     private LocalDateTime updateTime = LocalDateTime.now();
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.digitalbank.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.math.BigDecimal;
+
+@Entity
+@Table(name = "account_balance_slots",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "slot_no"}))
+@Data
+public class AccountBalanceSlot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "account_balance_slots_id")
+    @TableGenerator(name = "account_balance_slots_id", table = "id_sequences", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "account_balance_slots", allocationSize = 100)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+
+    @Column(nullable = false)
+    private Integer slotNo;
+
+    // 尚未归集到主余额的入账
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal balance = BigDecimal.ZERO;
+}
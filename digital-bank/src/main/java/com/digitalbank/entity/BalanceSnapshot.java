@@ -0,0 +1,34 @@
+package com.digitalbank.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// 账户日终余额检查点：snapshotDate当天结束时的余额，任意时刻的余额由最近的检查点加之后的交易得出
+@Entity
+@Table(name = "balance_snapshots", uniqueConstraints = @UniqueConstraint(name = "uk_balance_snapshots_account_date",
+        columnNames = {"account_id", "snapshot_date"}),
+        indexes = @Index(name = "idx_balance_snapshots_date", columnList = "snapshot_date"))
+@Data
+public class BalanceSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "balance_snapshots_id")
+    @TableGenerator(name = "balance_snapshots_id", table = "id_sequences", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "balance_snapshots", allocationSize = 100)
+    private Long id;
+
+    // 账户主键，不建外键约束，批量生成时不加载账户
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private LocalDate snapshotDate;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal balance = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private LocalDateTime createTime = LocalDateTime.now();
+}
\ No newline at end of file
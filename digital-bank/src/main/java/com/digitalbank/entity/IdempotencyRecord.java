@@ -0,0 +1,33 @@
+package com.digitalbank.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "idempotency_records", indexes = @Index(name = "idx_idempotency_create_time", columnList = "create_time"))
+@Data
+public class IdempotencyRecord {
+    // 操作名:幂等键
+    @Id
+    @Column(length = 191)
+    private String requestKey;
+
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    // PENDING 处理中（执行前插入占位），COMPLETED 已有最终结果
+    @Column(nullable = false, length = 16)
+    private String status = "PENDING";
+
+    private Integer httpStatus;
+
+    private Boolean success;
+
+    private String message;
+
+    private String transactionId;
+
+    @Column(nullable = false)
+    private LocalDateTime createTime = LocalDateTime.now();
+}
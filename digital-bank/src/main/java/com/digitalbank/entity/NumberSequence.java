@@ -0,0 +1,16 @@
+package com.digitalbank.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+@Entity
+@Table(name = "number_sequences")
+@Data
+public class NumberSequence {
+    @Id
+    private String name;
+
+    // 下一个尚未分配的序号
+    @Column(nullable = false)
+    private Long nextValue;
+}
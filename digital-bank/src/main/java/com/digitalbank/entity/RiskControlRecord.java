@@ -5,11 +5,18 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "risk_control_records")
+@Table(name = "risk_control_records", indexes = {
+        @Index(name = "idx_risk_records_status_time", columnList = "status, create_time"),
+        @Index(name = "idx_risk_records_status_level_time", columnList = "status, risk_level, create_time"),
+        @Index(name = "idx_risk_records_level_time", columnList = "risk_level, create_time"),
+        @Index(name = "idx_risk_records_create_time", columnList = "create_time")
+})
 @Data
 public class RiskControlRecord {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "risk_control_records_id")
+    @TableGenerator(name = "risk_control_records_id", table = "id_sequences", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "risk_control_records", allocationSize = 100)
     private Long id;
 
     @Column(nullable = false)
@@ -24,7 +31,7 @@ public class RiskControlRecord {
     private Transaction transaction;
 
     @Column(nullable = false)
-    private String riskType; // LARGE_AMOUNT, FREQUENT, SUSPICIOUS
+    private String riskType; // LARGE_AMOUNT, FREQUENT, SUSPICIOUS, SCORE, UNCHECKED
 
     private String riskLevel; // LOW, MEDIUM, HIGH
 
@@ -0,0 +1,34 @@
+package com.digitalbank.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// 风控记录发件箱：与记账在同一事务内写入，只有主键、没有外键和二级索引，
+// 由后台任务批量转存到 risk_control_records 后删除
+@Entity
+@Table(name = "risk_record_outbox")
+@Data
+public class RiskRecordOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "risk_record_outbox_id")
+    @TableGenerator(name = "risk_record_outbox_id", table = "id_sequences", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "risk_record_outbox", allocationSize = 100)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recordId;
+
+    // 关联交易的主键，不建外键约束
+    private Long transactionRef;
+
+    @Column(nullable = false)
+    private String riskType;
+
+    private String riskLevel;
+
+    private String description;
+
+    @Column(nullable = false)
+    private LocalDateTime createTime;
+}
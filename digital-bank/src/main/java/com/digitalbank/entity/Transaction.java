@@ -6,11 +6,17 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_type_time", columnList = "transaction_type, transaction_time"),
+        @Index(name = "idx_transactions_time", columnList = "transaction_time"),
+        @Index(name = "idx_transactions_from_time", columnList = "from_account_id, transaction_time"),
+        @Index(name = "idx_transactions_to_time", columnList = "to_account_id, transaction_time")})
 @Data
 public class Transaction {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "transactions_id")
+    @TableGenerator(name = "transactions_id", table = "id_sequences", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "transactions", allocationSize = 100)
     private Long id;
 
     @Column(unique = true, nullable = false)
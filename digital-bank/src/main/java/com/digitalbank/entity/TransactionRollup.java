@@ -0,0 +1,47 @@
+package com.digitalbank.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// 交易汇总：按(日期, 小时, 交易类型, 状态, 币种)分桶累计笔数、金额和手续费，报表只读汇总表
+@Entity
+@Table(name = "transaction_rollups", uniqueConstraints = @UniqueConstraint(name = "uk_transaction_rollups_bucket",
+        columnNames = {"bucket_date", "bucket_hour", "transaction_type", "status", "currency"}))
+@Data
+public class TransactionRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "transaction_rollups_id")
+    @TableGenerator(name = "transaction_rollups_id", table = "id_sequences", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "transaction_rollups", allocationSize = 100)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate bucketDate;
+
+    @Column(nullable = false)
+    private Integer bucketHour;
+
+    @Column(nullable = false)
+    private String transactionType;
+
+    @Column(nullable = false)
+    private String status;
+
+    @Column(nullable = false)
+    private String currency;
+
+    @Column(nullable = false)
+    private Long txCount = 0L;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amountSum = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal feeSum = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private LocalDateTime updateTime = LocalDateTime.now();
+}
\ No newline at end of file
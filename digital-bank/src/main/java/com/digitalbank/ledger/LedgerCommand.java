@@ -0,0 +1,22 @@
+package com.digitalbank.ledger;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+// 投递到分片收件箱的账务指令，由分片线程串行执行
+class LedgerCommand {
+    enum Type {
+        VERIFY, CREDIT, DEBIT, BALANCE
+    }
+
+    final Type type;
+    final String accountNumber;
+    final BigDecimal amount;
+    final CompletableFuture<BigDecimal> result = new CompletableFuture<>();
+
+    LedgerCommand(Type type, String accountNumber, BigDecimal amount) {
+        this.type = type;
+        this.accountNumber = accountNumber;
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,231 @@
+package com.digitalbank.ledger;
+
+import com.digitalbank.repository.AccountRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+// 进程内分片账务引擎：按账号哈希把账户分配到N个单写者分片，余额在内存中变更后异步有序落库。
+// 开启后本进程独占账户余额的写入，数据库中的余额会有短暂滞后。
+// 在事务内调用时，扣款立即占用余额、事务回滚时冲回；入账在事务提交后才计入，
+// 因此回滚和整笔重试都不会在内存账本上多记或少记。
+@Slf4j
+@Component
+public class LedgerEngine {
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${digitalbank.ledger.enabled:false}")
+    private boolean enabled;
+
+    @Value("${digitalbank.ledger.shards:0}")
+    private int shardCount;
+
+    @Value("${digitalbank.ledger.inbox-capacity:65536}")
+    private int inboxCapacity;
+
+    @Value("${digitalbank.ledger.submit-timeout-ms:1000}")
+    private long submitTimeoutMillis;
+
+    @Value("${digitalbank.ledger.idle-evict-ms:300000}")
+    private long idleEvictMillis;
+
+    private LedgerShard[] shards;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (shardCount <= 0) {
+            shardCount = Runtime.getRuntime().availableProcessors();
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        shards = new LedgerShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new LedgerShard(i, inboxCapacity, idleEvictMillis, accountRepository, transactionTemplate);
+            shards[i].start();
+        }
+        log.info("账务引擎已启动，分片数：{}", shardCount);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (shards == null) {
+            return;
+        }
+        for (LedgerShard shard : shards) {
+            shard.stop();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void deposit(String accountNumber, BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new RuntimeException("存款金额必须大于0");
+        }
+        // 先同步校验账户存在且状态正常，金额在提交后入账
+        await(submit(LedgerCommand.Type.VERIFY, accountNumber, null));
+        settle(accountNumber, amount);
+    }
+
+    public void withdraw(String accountNumber, BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new RuntimeException("取款金额必须大于0");
+        }
+        await(submit(LedgerCommand.Type.DEBIT, accountNumber, amount));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        post(accountNumber, amount);
+                    } else if (status == STATUS_UNKNOWN) {
+                        log.error("账户{}扣款{}所在事务提交结果未知，内存账本未冲回，需按交易记录核对", accountNumber, amount);
+                    }
+                }
+            });
+        }
+    }
+
+    // 无条件入账已确定的金额（如热点账户归集），事务内调用时在提交后执行，不校验账户状态
+    public void settle(String accountNumber, BigDecimal amount) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    post(accountNumber, amount);
+                }
+            });
+        } else {
+            await(submit(LedgerCommand.Type.CREDIT, accountNumber, amount));
+        }
+    }
+
+    public BigDecimal getBalance(String accountNumber) {
+        return await(submit(LedgerCommand.Type.BALANCE, accountNumber, null));
+    }
+
+    public void transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        // 先在转出方分片扣款，再校验转入方；转入方不可入账时冲回转出方。
+        // 事务内的冲回同样放到提交后：事务回滚时扣款已由回滚冲回，不能再冲一次
+        withdraw(fromAccountNumber, amount);
+        try {
+            await(submit(LedgerCommand.Type.VERIFY, toAccountNumber, null));
+        } catch (RuntimeException e) {
+            settle(fromAccountNumber, amount);
+            throw e;
+        }
+        settle(toAccountNumber, amount);
+    }
+
+    public int pendingCommands() {
+        int pending = 0;
+        if (shards != null) {
+            for (LedgerShard shard : shards) {
+                pending += shard.pendingCommands();
+            }
+        }
+        return pending;
+    }
+
+    public int pendingWrites() {
+        int pending = 0;
+        if (shards != null) {
+            for (LedgerShard shard : shards) {
+                pending += shard.pendingWrites();
+            }
+        }
+        return pending;
+    }
+
+    public int cachedAccounts() {
+        int cached = 0;
+        if (shards != null) {
+            for (LedgerShard shard : shards) {
+                cached += shard.cachedAccounts();
+            }
+        }
+        return cached;
+    }
+
+    public int suspendedShards() {
+        int suspended = 0;
+        if (shards != null) {
+            for (LedgerShard shard : shards) {
+                if (shard.isSuspended()) {
+                    suspended++;
+                }
+            }
+        }
+        return suspended;
+    }
+
+    // 投递已确定的入账，不等待执行结果；失败只可能是账户已被删除，记录后人工处理
+    private void post(String accountNumber, BigDecimal amount) {
+        LedgerCommand command = new LedgerCommand(LedgerCommand.Type.CREDIT, accountNumber, amount);
+        command.result.whenComplete((balance, e) -> {
+            if (e != null) {
+                log.error("账户{}入账{}失败：{}", accountNumber, amount, e.getMessage());
+            }
+        });
+        try {
+            shardFor(accountNumber).post(command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("账户{}入账{}投递被中断", accountNumber, amount);
+        }
+    }
+
+    private CompletableFuture<BigDecimal> submit(LedgerCommand.Type type, String accountNumber, BigDecimal amount) {
+        if (shards == null) {
+            throw new IllegalStateException("账务引擎未启用");
+        }
+        LedgerCommand command = new LedgerCommand(type, accountNumber, amount);
+        try {
+            if (!shardFor(accountNumber).submit(command, submitTimeoutMillis)) {
+                throw new TransientDataAccessResourceException("账务引擎繁忙，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("账务指令提交被中断");
+        }
+        return command.result;
+    }
+
+    private LedgerShard shardFor(String accountNumber) {
+        return shards[Math.floorMod(accountNumber.hashCode(), shards.length)];
+    }
+
+    private BigDecimal await(CompletableFuture<BigDecimal> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待账务结果被中断");
+        } catch (ExecutionException | CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.digitalbank.ledger;
+
+import com.digitalbank.entity.Account;
+import com.digitalbank.repository.AccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// 单写者分片：一个线程独占本分片内账户的内存余额，另一个线程按顺序异步落库
+@Slf4j
+class LedgerShard {
+    private static final int PERSIST_BATCH_SIZE = 500;
+    private static final long EVICT_CHECK_INTERVAL_MILLIS = 1000;
+    private static final long MAX_PERSIST_BACKOFF_MILLIS = 5000;
+    // 连续落库失败达到该次数后分片暂停受理新指令，直到落库恢复
+    private static final int PERSIST_FAILURES_TO_SUSPEND = 3;
+
+    private final int index;
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long idleEvictMillis;
+
+    // 收件箱为定长环形数组，满时由提交方等待，形成背压
+    private final BlockingQueue<LedgerCommand> inbox;
+    private final BlockingQueue<BalanceUpdate> persistQueue = new LinkedBlockingQueue<>();
+
+    // 仅由分片线程访问，无需加锁
+    private final Map<String, Balance> balances = new HashMap<>();
+
+    private final Thread writer;
+    private final Thread persister;
+    private volatile boolean running = true;
+    private volatile int persistFailures;
+    private long lastEvictCheck;
+
+    LedgerShard(int index, int inboxCapacity, long idleEvictMillis, AccountRepository accountRepository,
+                TransactionTemplate transactionTemplate) {
+        this.index = index;
+        this.inbox = new ArrayBlockingQueue<>(inboxCapacity);
+        this.idleEvictMillis = idleEvictMillis;
+        this.accountRepository = accountRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.writer = new Thread(this::runWriter, "ledger-shard-" + index);
+        this.persister = new Thread(this::runPersister, "ledger-persist-" + index);
+    }
+
+    void start() {
+        writer.start();
+        persister.start();
+    }
+
+    void stop() throws InterruptedException {
+        running = false;
+        writer.join();
+        persister.join();
+    }
+
+    boolean submit(LedgerCommand command, long timeoutMillis) throws InterruptedException {
+        if (isSuspended()) {
+            throw new TransientDataAccessResourceException("账务分片" + index + "落库异常，暂停受理");
+        }
+        return inbox.offer(command, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // 已提交事务的入账和回滚冲正代表已确定的结果，不受背压超时和暂停受理限制，队列满时等待
+    void post(LedgerCommand command) throws InterruptedException {
+        inbox.put(command);
+    }
+
+    boolean isSuspended() {
+        return persistFailures >= PERSIST_FAILURES_TO_SUSPEND;
+    }
+
+    int cachedAccounts() {
+        return balances.size();
+    }
+
+    int pendingCommands() {
+        return inbox.size();
+    }
+
+    int pendingWrites() {
+        return persistQueue.size();
+    }
+
+    private void runWriter() {
+        while (running || !inbox.isEmpty()) {
+            LedgerCommand command;
+            try {
+                command = inbox.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (command != null) {
+                try {
+                    command.result.complete(apply(command));
+                } catch (Exception e) {
+                    command.result.completeExceptionally(e);
+                }
+            }
+            evictIdle();
+        }
+    }
+
+    // 淘汰长时间未访问且已全部落库的账户，下次访问时从数据库重新加载，
+    // 避免缓存无限增长，也让外部对账户状态的修改能被重新读到
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        if (now - lastEvictCheck < EVICT_CHECK_INTERVAL_MILLIS) {
+            return;
+        }
+        lastEvictCheck = now;
+        balances.values().removeIf(balance -> now - balance.lastAccess >= idleEvictMillis
+                && balance.persistedVersion == balance.version);
+    }
+
+    private BigDecimal apply(LedgerCommand command) {
+        Balance balance = balances.get(command.accountNumber);
+        if (balance == null) {
+            Account account = accountRepository.findByAccountNumber(command.accountNumber)
+                    .orElseThrow(() -> new RuntimeException("账户不存在"));
+            balance = new Balance(account.getBalance(), account.getAvailableBalance(), account.getStatus());
+            balances.put(command.accountNumber, balance);
+        }
+        balance.lastAccess = System.currentTimeMillis();
+
+        switch (command.type) {
+            case VERIFY -> {
+                checkActive(balance);
+                return balance.balance;
+            }
+            case CREDIT -> {
+                // 只用于已提交的入账和冲正，不再校验账户状态
+                balance.balance = balance.balance.add(command.amount);
+                balance.availableBalance = balance.availableBalance.add(command.amount);
+            }
+            case DEBIT -> {
+                checkActive(balance);
+                if (balance.availableBalance.compareTo(command.amount) < 0) {
+                    throw new RuntimeException("余额不足");
+                }
+                balance.balance = balance.balance.subtract(command.amount);
+                balance.availableBalance = balance.availableBalance.subtract(command.amount);
+            }
+            case BALANCE -> {
+                return balance.balance;
+            }
+        }
+
+        balance.version++;
+        persistQueue.add(new BalanceUpdate(command.accountNumber, balance, balance.version, balance.balance,
+                balance.availableBalance, LocalDateTime.now()));
+        return balance.balance;
+    }
+
+    private void checkActive(Balance balance) {
+        if ("FROZEN".equals(balance.status)) {
+            throw new RuntimeException("账户已冻结");
+        }
+        if (!"ACTIVE".equals(balance.status)) {
+            throw new RuntimeException("账户状态异常：" + balance.status);
+        }
+    }
+
+    private void runPersister() {
+        List<BalanceUpdate> drained = new ArrayList<>(PERSIST_BATCH_SIZE);
+        while (running || writer.isAlive() || !persistQueue.isEmpty()) {
+            try {
+                BalanceUpdate first = persistQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                drained.add(first);
+                persistQueue.drainTo(drained, PERSIST_BATCH_SIZE - 1);
+                flushWithRetry(drained);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                drained.clear();
+            }
+        }
+    }
+
+    // 同一批次失败后原样重试，不跳过也不乱序；写入的是余额终值，重复写入结果不变
+    private void flushWithRetry(List<BalanceUpdate> updates) throws InterruptedException {
+        long backoff = 100;
+        while (true) {
+            try {
+                flush(updates);
+                if (persistFailures > 0) {
+                    log.info("账务分片{}落库已恢复", index);
+                    persistFailures = 0;
+                }
+                return;
+            } catch (Exception e) {
+                persistFailures++;
+                log.error("账务分片{}落库失败（连续第{}次），{}条余额更新稍后重试",
+                        index, persistFailures, updates.size(), e);
+                if (!running && !writer.isAlive()) {
+                    // 停机时不无限等待，未落库的余额需按交易记录核对修复
+                    log.error("账务分片{}停机时仍有{}条余额更新未落库", index, updates.size() + persistQueue.size());
+                    persistQueue.clear();
+                    return;
+                }
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_PERSIST_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void flush(List<BalanceUpdate> updates) {
+        // 同一批次内同一账户只保留最后一次余额，按入队顺序写入
+        Map<String, BalanceUpdate> latest = new LinkedHashMap<>();
+        for (BalanceUpdate update : updates) {
+            latest.put(update.accountNumber(), update);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (BalanceUpdate update : latest.values()) {
+                accountRepository.updateBalances(update.accountNumber(), update.balance(),
+                        update.availableBalance(), update.updateTime());
+            }
+        });
+        for (BalanceUpdate update : updates) {
+            update.owner().persistedVersion = update.version();
+        }
+    }
+
+    private static class Balance {
+        BigDecimal balance;
+        BigDecimal availableBalance;
+        final String status;
+        long lastAccess;
+        // 分片线程每次变更加一，落库线程写入成功后回填，两者相等表示没有未落库的变更
+        long version;
+        volatile long persistedVersion;
+
+        Balance(BigDecimal balance, BigDecimal availableBalance, String status) {
+            this.balance = balance;
+            this.availableBalance = availableBalance;
+            this.status = status;
+        }
+    }
+
+    private record BalanceUpdate(String accountNumber, Balance owner, long version, BigDecimal balance,
+                                 BigDecimal availableBalance, LocalDateTime updateTime) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.digitalbank.repository;
+
+import com.digitalbank.entity.AccountBalanceSlot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface AccountBalanceSlotRepository extends JpaRepository<AccountBalanceSlot, Long> {
+    @Modifying
+    @Transactional
+    @Query("UPDATE AccountBalanceSlot s SET s.balance = s.balance + :amount " +
+            "WHERE s.account.id = :accountId AND s.slotNo = :slotNo")
+    int credit(@Param("accountId") Long accountId,
+               @Param("slotNo") int slotNo,
+               @Param("amount") BigDecimal amount);
+
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM AccountBalanceSlot s WHERE s.account.id = :accountId")
+    BigDecimal sumByAccountId(@Param("accountId") Long accountId);
+
+    // 归集时锁住全部分槽，期间落到分槽的入账会等待归集完成
+    @Query(value = "SELECT balance FROM account_balance_slots WHERE account_id = :accountId FOR UPDATE",
+            nativeQuery = true)
+    List<BigDecimal> lockBalancesByAccountId(@Param("accountId") Long accountId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE AccountBalanceSlot s SET s.balance = 0 WHERE s.account.id = :accountId")
+    int reset(@Param("accountId") Long accountId);
+}
@@ -1,8 +1,16 @@
 package com.digitalbank.repository;
 
 import com.digitalbank.entity.Account;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +20,50 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     List<Account> findByUserId(Long userId);
     List<Account> findByUserUserId(String userId);
     boolean existsByAccountNumber(String accountNumber);
+    List<Account> findByBalanceSlotsGreaterThan(Integer balanceSlots);
+    List<Account> findByAccountNumberIn(Collection<String> accountNumbers);
+
+    // 按主键分段取指定时间之前开户的账户，供批量任务分块处理
+    @Query("SELECT a.id FROM Account a WHERE a.id > :afterId " +
+            "AND (a.createTime IS NULL OR a.createTime < :openedBefore) ORDER BY a.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, @Param("openedBefore") LocalDateTime openedBefore,
+                            Pageable pageable);
+
+    // 只锁行不加载实体，避免后续批量更新后持久化上下文中残留旧余额
+    @Query(value = "SELECT id FROM accounts WHERE account_number = :accountNumber FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockByAccountNumber(@Param("accountNumber") String accountNumber);
+
+    // 单条语句完成入账，返回受影响行数（0表示账户不存在）
+    @Modifying
+    @Transactional
+    @Query("UPDATE Account a SET a.balance = a.balance + :amount, " +
+            "a.availableBalance = a.availableBalance + :amount, a.updateTime = :updateTime " +
+            "WHERE a.accountNumber = :accountNumber")
+    int credit(@Param("accountNumber") String accountNumber,
+               @Param("amount") BigDecimal amount,
+               @Param("updateTime") LocalDateTime updateTime);
+
+    // 单条语句完成扣款，可用余额不足或账户不存在时返回0
+    @Modifying
+    @Transactional
+    @Query("UPDATE Account a SET a.balance = a.balance - :amount, " +
+            "a.availableBalance = a.availableBalance - :amount, a.updateTime = :updateTime " +
+            "WHERE a.accountNumber = :accountNumber AND a.availableBalance >= :amount")
+    int debit(@Param("accountNumber") String accountNumber,
+              @Param("amount") BigDecimal amount,
+              @Param("updateTime") LocalDateTime updateTime);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Account a SET a.balanceSlots = :balanceSlots WHERE a.id = :id")
+    int updateBalanceSlots(@Param("id") Long id, @Param("balanceSlots") Integer balanceSlots);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Account a SET a.balance = :balance, a.availableBalance = :availableBalance, " +
+            "a.updateTime = :updateTime WHERE a.accountNumber = :accountNumber")
+    int updateBalances(@Param("accountNumber") String accountNumber,
+                       @Param("balance") BigDecimal balance,
+                       @Param("availableBalance") BigDecimal availableBalance,
+                       @Param("updateTime") LocalDateTime updateTime);
 }
\ No newline at end of file
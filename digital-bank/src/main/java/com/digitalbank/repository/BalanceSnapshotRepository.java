@@ -0,0 +1,33 @@
+package com.digitalbank.repository;
+
+import com.digitalbank.entity.BalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+    // 指定日期之前最近的检查点，走(account_id, snapshot_date)唯一索引
+    Optional<BalanceSnapshot> findFirstByAccountIdAndSnapshotDateLessThanOrderBySnapshotDateDesc(Long accountId,
+                                                                                                 LocalDate date);
+
+    List<BalanceSnapshot> findByAccountIdInAndSnapshotDate(Collection<Long> accountIds, LocalDate snapshotDate);
+
+    @Modifying
+    @Query("DELETE FROM BalanceSnapshot s WHERE s.snapshotDate = :date AND s.accountId IN :accountIds")
+    int deleteBySnapshotDateAndAccountIds(@Param("date") LocalDate date,
+                                          @Param("accountIds") Collection<Long> accountIds);
+
+    @Query("SELECT MAX(s.snapshotDate) FROM BalanceSnapshot s")
+    LocalDate findLatestSnapshotDate();
+
+    // 已生成检查点的日期，升序；在snapshot_date索引上完成去重，用于找出中间缺失的日期
+    @Query("SELECT DISTINCT s.snapshotDate FROM BalanceSnapshot s ORDER BY s.snapshotDate")
+    List<LocalDate> findSnapshotDates();
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.digitalbank.repository;
+
+import com.digitalbank.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+    // 直接插入处理中记录，主键冲突说明该幂等键已被占用
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO idempotency_records (request_key, request_hash, status, create_time) " +
+            "VALUES (:requestKey, :requestHash, 'PENDING', :createTime)", nativeQuery = true)
+    int insertPending(@Param("requestKey") String requestKey,
+                      @Param("requestHash") String requestHash,
+                      @Param("createTime") LocalDateTime createTime);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.status = 'COMPLETED', r.httpStatus = :httpStatus, " +
+            "r.success = :success, r.message = :message, r.transactionId = :transactionId " +
+            "WHERE r.requestKey = :requestKey AND r.status = 'PENDING'")
+    int complete(@Param("requestKey") String requestKey,
+                 @Param("httpStatus") Integer httpStatus,
+                 @Param("success") Boolean success,
+                 @Param("message") String message,
+                 @Param("transactionId") String transactionId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.requestKey = :requestKey AND r.status = 'PENDING'")
+    int deletePending(@Param("requestKey") String requestKey);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createTime < :before")
+    int deleteByCreateTimeBefore(@Param("before") LocalDateTime before);
+}
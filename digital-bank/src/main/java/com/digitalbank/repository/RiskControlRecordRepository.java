@@ -1,18 +1,58 @@
 package com.digitalbank.repository;
 
 import com.digitalbank.entity.RiskControlRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 
+// 分页查询按(createTime, id)倒序取游标之前的记录，不用offset，翻到任意位置都只扫描一页索引
 @Repository
 public interface RiskControlRecordRepository extends JpaRepository<RiskControlRecord, Long> {
-    List<RiskControlRecord> findByRiskLevel(String riskLevel);
-    List<RiskControlRecord> findByStatus(String status);
+    String BEFORE = "(r.createTime < :beforeTime OR (r.createTime = :beforeTime AND r.id < :beforeId)) ";
+    String NEWEST_FIRST = "ORDER BY r.createTime DESC, r.id DESC";
 
-    @Query("SELECT r FROM RiskControlRecord r WHERE r.createTime >= CURRENT_DATE")
-    List<RiskControlRecord> findTodayRecords();
+    @EntityGraph(attributePaths = {"account", "transaction"})
+    @Query("SELECT r FROM RiskControlRecord r WHERE " + BEFORE + NEWEST_FIRST)
+    List<RiskControlRecord> findPageBefore(@Param("beforeTime") LocalDateTime beforeTime,
+                                           @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"account", "transaction"})
+    @Query("SELECT r FROM RiskControlRecord r WHERE r.riskLevel = :riskLevel AND " + BEFORE + NEWEST_FIRST)
+    List<RiskControlRecord> findPageByRiskLevelBefore(@Param("riskLevel") String riskLevel,
+                                                      @Param("beforeTime") LocalDateTime beforeTime,
+                                                      @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"account", "transaction"})
+    @Query("SELECT r FROM RiskControlRecord r WHERE r.status = :status AND " + BEFORE + NEWEST_FIRST)
+    List<RiskControlRecord> findPageByStatusBefore(@Param("status") String status,
+                                                   @Param("beforeTime") LocalDateTime beforeTime,
+                                                   @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"account", "transaction"})
+    @Query("SELECT r FROM RiskControlRecord r WHERE r.status = :status AND r.riskLevel = :riskLevel AND "
+            + BEFORE + NEWEST_FIRST)
+    List<RiskControlRecord> findPageByStatusAndRiskLevelBefore(@Param("status") String status,
+                                                               @Param("riskLevel") String riskLevel,
+                                                               @Param("beforeTime") LocalDateTime beforeTime,
+                                                               @Param("beforeId") Long beforeId, Pageable pageable);
+
+    // 当日记录：时间下限之后、游标之前
+    @EntityGraph(attributePaths = {"account", "transaction"})
+    @Query("SELECT r FROM RiskControlRecord r WHERE r.createTime >= :since AND " + BEFORE + NEWEST_FIRST)
+    List<RiskControlRecord> findPageSinceBefore(@Param("since") LocalDateTime since,
+                                                @Param("beforeTime") LocalDateTime beforeTime,
+                                                @Param("beforeId") Long beforeId, Pageable pageable);
+
+    long countByCreateTimeGreaterThanEqual(LocalDateTime since);
+
+    // 返回[riskLevel, status, count]，在(status, risk_level, create_time)索引上完成分组
+    @Query("SELECT r.riskLevel, r.status, COUNT(r) FROM RiskControlRecord r GROUP BY r.riskLevel, r.status")
+    List<Object[]> countByRiskLevelAndStatus();
 
     List<RiskControlRecord> findByAccountAccountNumber(String accountNumber);
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.digitalbank.repository;
+
+import com.digitalbank.entity.RiskRecordOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface RiskRecordOutboxRepository extends JpaRepository<RiskRecordOutbox, Long> {
+    List<RiskRecordOutbox> findByOrderByIdAsc(Pageable pageable);
+}
@@ -1,12 +1,91 @@
 package com.digitalbank.repository;
 
+import com.digitalbank.dto.StatementLine;
 import com.digitalbank.entity.Transaction;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+    Optional<Transaction> findByTransactionId(String transactionId);
     List<Transaction> findByFromAccountAccountNumberOrToAccountAccountNumber(String fromAccountNumber, String toAccountNumber);
     List<Transaction> findByFromAccountUserIdOrToAccountUserId(Long fromUserId, Long toUserId);
+
+    // 按账户汇总指定时间之后的成功取款，走(transaction_type, transaction_time)索引
+    @Query("SELECT t.fromAccount.accountNumber, SUM(t.amount) FROM Transaction t " +
+            "WHERE t.transactionType = 'WITHDRAWAL' AND t.status = 'SUCCESS' AND t.transactionTime >= :since " +
+            "GROUP BY t.fromAccount.accountNumber")
+    List<Object[]> sumWithdrawalsByAccountSince(@Param("since") LocalDateTime since);
+
+    // 返回[transactionType, status, count, sum(amount), sum(fee)]，按transaction_time索引取时间范围后分组
+    @Query("SELECT t.transactionType, t.status, COUNT(t), SUM(t.amount), SUM(t.fee) FROM Transaction t " +
+            "WHERE t.transactionTime >= :start AND t.transactionTime < :end " +
+            "GROUP BY t.transactionType, t.status")
+    List<Object[]> summarizeByTypeAndStatus(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // 返回[hour, transactionType, status, currency, count, sum(amount), sum(fee)]，用于重建和核对交易汇总
+    @Query("SELECT EXTRACT(HOUR FROM t.transactionTime), t.transactionType, t.status, t.currency, COUNT(t), " +
+            "SUM(t.amount), SUM(t.fee) FROM Transaction t " +
+            "WHERE t.transactionTime >= :start AND t.transactionTime < :end " +
+            "GROUP BY EXTRACT(HOUR FROM t.transactionTime), t.transactionType, t.status, t.currency")
+    List<Object[]> summarizeByHourTypeStatusCurrency(@Param("start") LocalDateTime start,
+                                                     @Param("end") LocalDateTime end);
+
+    // 按(transactionTime, id)正序取游标之后、end之前的交易，不用offset
+    @EntityGraph(attributePaths = {"fromAccount", "fromAccount.user", "toAccount", "toAccount.user"})
+    @Query("SELECT t FROM Transaction t WHERE t.transactionTime < :end AND " +
+            "(t.transactionTime > :afterTime OR (t.transactionTime = :afterTime AND t.id > :afterId)) " +
+            "ORDER BY t.transactionTime, t.id")
+    List<Transaction> findPageBetween(@Param("afterTime") LocalDateTime afterTime, @Param("afterId") Long afterId,
+                                      @Param("end") LocalDateTime end, Pageable pageable);
+
+    // 对账单按时间正序逐行读出，需在事务内消费并关闭。MySQL驱动在fetchSize为Integer.MIN_VALUE时
+    // 逐行流式读取，结果集不在内存中缓存；付款方和收款方各走(账户, 交易时间)索引
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT new com.digitalbank.dto.StatementLine(t.id, t.transactionId, t.transactionType, t.transactionTime, " +
+            "fa.accountNumber, ta.accountNumber, t.amount, t.fee, t.currency, t.status, t.description) " +
+            "FROM Transaction t LEFT JOIN t.fromAccount fa LEFT JOIN t.toAccount ta " +
+            "WHERE (FK(t.fromAccount) = :accountId OR FK(t.toAccount) = :accountId) " +
+            "AND t.transactionTime >= :start AND t.transactionTime < :end " +
+            "ORDER BY t.transactionTime, t.id")
+    Stream<StatementLine> streamStatement(@Param("accountId") Long accountId,
+                                          @Param("start") LocalDateTime start,
+                                          @Param("end") LocalDateTime end);
+
+    // 成功交易的转入、转出合计，分别走(to_account_id, transaction_time)和(from_account_id, transaction_time)索引
+    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t WHERE FK(t.toAccount) = :accountId " +
+            "AND t.status = 'SUCCESS' AND t.transactionTime >= :start AND t.transactionTime < :end")
+    BigDecimal sumIncoming(@Param("accountId") Long accountId, @Param("start") LocalDateTime start,
+                           @Param("end") LocalDateTime end);
+
+    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t WHERE FK(t.fromAccount) = :accountId " +
+            "AND t.status = 'SUCCESS' AND t.transactionTime >= :start AND t.transactionTime < :end")
+    BigDecimal sumOutgoing(@Param("accountId") Long accountId, @Param("start") LocalDateTime start,
+                           @Param("end") LocalDateTime end);
+
+    // 返回[accountId, sum(amount)]；没有显式关联时account.id直接取外键列，不关联账户表
+    @Query("SELECT t.toAccount.id, SUM(t.amount) FROM Transaction t WHERE t.toAccount.id IN :accountIds " +
+            "AND t.status = 'SUCCESS' AND t.transactionTime >= :start AND t.transactionTime < :end " +
+            "GROUP BY t.toAccount.id")
+    List<Object[]> sumIncomingByAccount(@Param("accountIds") Collection<Long> accountIds,
+                                        @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("SELECT t.fromAccount.id, SUM(t.amount) FROM Transaction t WHERE t.fromAccount.id IN :accountIds " +
+            "AND t.status = 'SUCCESS' AND t.transactionTime >= :start AND t.transactionTime < :end " +
+            "GROUP BY t.fromAccount.id")
+    List<Object[]> sumOutgoingByAccount(@Param("accountIds") Collection<Long> accountIds,
+                                        @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 }
\ No newline at end of file
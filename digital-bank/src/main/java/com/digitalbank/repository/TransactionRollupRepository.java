@@ -0,0 +1,56 @@
+package com.digitalbank.repository;
+
+import com.digitalbank.entity.TransactionRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TransactionRollupRepository extends JpaRepository<TransactionRollup, Long> {
+    // 在原有累计上加增量，返回0表示该桶还没有行
+    @Modifying
+    @Query("UPDATE TransactionRollup r SET r.txCount = r.txCount + :count, r.amountSum = r.amountSum + :amount, " +
+            "r.feeSum = r.feeSum + :fee, r.updateTime = :updateTime " +
+            "WHERE r.bucketDate = :date AND r.bucketHour = :hour AND r.transactionType = :transactionType " +
+            "AND r.status = :status AND r.currency = :currency")
+    int increment(@Param("date") LocalDate date,
+                  @Param("hour") Integer hour,
+                  @Param("transactionType") String transactionType,
+                  @Param("status") String status,
+                  @Param("currency") String currency,
+                  @Param("count") long count,
+                  @Param("amount") BigDecimal amount,
+                  @Param("fee") BigDecimal fee,
+                  @Param("updateTime") LocalDateTime updateTime);
+
+    @Modifying
+    @Query("DELETE FROM TransactionRollup r WHERE r.bucketDate = :date")
+    int deleteByBucketDate(@Param("date") LocalDate date);
+
+    List<TransactionRollup> findByBucketDate(LocalDate date);
+
+    // 日期范围内已有汇总桶的日期，没有桶的日期（启用前的历史或尚未回填）由报表回退到原始交易
+    @Query("SELECT DISTINCT r.bucketDate FROM TransactionRollup r " +
+            "WHERE r.bucketDate >= :startDate AND r.bucketDate <= :endDate")
+    List<LocalDate> findBucketDates(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    // 返回[transactionType, status, count, sum(amount), sum(fee)]，只读日期范围内的汇总桶
+    @Query("SELECT r.transactionType, r.status, SUM(r.txCount), SUM(r.amountSum), SUM(r.feeSum) " +
+            "FROM TransactionRollup r WHERE r.bucketDate >= :startDate AND r.bucketDate <= :endDate " +
+            "GROUP BY r.transactionType, r.status")
+    List<Object[]> summarizeByTypeAndStatus(@Param("startDate") LocalDate startDate,
+                                            @Param("endDate") LocalDate endDate);
+
+    // 返回[bucketDate, bucketHour, transactionType, status, count, sum(amount), sum(fee)]，按日期和小时排序
+    @Query("SELECT r.bucketDate, r.bucketHour, r.transactionType, r.status, SUM(r.txCount), SUM(r.amountSum), " +
+            "SUM(r.feeSum) FROM TransactionRollup r WHERE r.bucketDate >= :startDate AND r.bucketDate <= :endDate " +
+            "GROUP BY r.bucketDate, r.bucketHour, r.transactionType, r.status " +
+            "ORDER BY r.bucketDate, r.bucketHour")
+    List<Object[]> summarizeByHour(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+}
\ No newline at end of file
@@ -0,0 +1,139 @@
+package com.digitalbank.risk;
+
+import com.digitalbank.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongPredicate;
+
+// 按账户累计当日取款金额（单位：分），取款限额检查不再扫描交易表。
+// 启动时用当日成功取款的分组汇总重建，跨天时整体换成新的空桶。
+// 计数只在本实例内有效，多实例部署时每个实例各自累计
+@Slf4j
+@Component
+public class DailyWithdrawalCounter {
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private final AtomicReference<DayBucket> current = new AtomicReference<>(new DayBucket(LocalDate.now()));
+
+    @PostConstruct
+    public void rebuild() {
+        LocalDate today = LocalDate.now();
+        DayBucket bucket = new DayBucket(today);
+        List<Object[]> totals = transactionRepository.sumWithdrawalsByAccountSince(today.atStartOfDay());
+        for (Object[] row : totals) {
+            bucket.totals.put((String) row[0], toCents((BigDecimal) row[1]));
+        }
+        current.set(bucket);
+        log.info("当日取款计数已重建，账户数：{}", totals.size());
+    }
+
+    // 以当日已取款金额（分，不含本笔）调用accept，通过时占用额度并返回占用凭证，否则返回null。
+    // 判断和占用在同一次原子更新内完成，并发取款不会同时通过限额检查；accept应只做内存计算。
+    // 处于事务中时，事务回滚会自动归还额度
+    public Reservation tryReserve(String accountNumber, BigDecimal amount, LongPredicate accept) {
+        DayBucket bucket = today();
+        long cents = toCents(amount);
+        boolean[] accepted = new boolean[1];
+        bucket.totals.compute(accountNumber, (key, total) -> {
+            long used = total == null ? 0 : total;
+            if (!accept.test(used)) {
+                return total;
+            }
+            accepted[0] = true;
+            return used + cents;
+        });
+        if (!accepted[0]) {
+            return null;
+        }
+
+        Reservation reservation = new Reservation(bucket, accountNumber, cents);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        reservation.release();
+                    }
+                }
+            });
+        }
+        return reservation;
+    }
+
+    public BigDecimal getTodayTotal(String accountNumber) {
+        if (accountNumber == null) {
+            return BigDecimal.ZERO;
+        }
+        Long total = today().totals.get(accountNumber);
+        return total == null ? BigDecimal.ZERO : BigDecimal.valueOf(total, 2);
+    }
+
+    public int getTrackedAccounts() {
+        return today().totals.size();
+    }
+
+    @Scheduled(cron = "0 0 0 * * *")
+    public void resetAtMidnight() {
+        today();
+    }
+
+    private DayBucket today() {
+        DayBucket bucket = current.get();
+        LocalDate now = LocalDate.now();
+        if (!bucket.day.equals(now)) {
+            DayBucket fresh = new DayBucket(now);
+            // 并发跨天时只有一个线程换桶成功，其余线程使用它换上的桶
+            if (!current.compareAndSet(bucket, fresh)) {
+                return current.get();
+            }
+            return fresh;
+        }
+        return bucket;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.UP).unscaledValue().longValueExact();
+    }
+
+    private static class DayBucket {
+        final LocalDate day;
+        final ConcurrentHashMap<String, Long> totals = new ConcurrentHashMap<>();
+
+        DayBucket(LocalDate day) {
+            this.day = day;
+        }
+    }
+
+    public static class Reservation {
+        private final DayBucket bucket;
+        private final String accountNumber;
+        private final long cents;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Reservation(DayBucket bucket, String accountNumber, long cents) {
+            this.bucket = bucket;
+            this.accountNumber = accountNumber;
+            this.cents = cents;
+        }
+
+        // 取款未完成时归还额度，重复调用只生效一次；跨天后旧桶已废弃，归还不影响新的一天
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                bucket.totals.computeIfPresent(accountNumber, (key, total) -> total - cents > 0 ? total - cents : null);
+            }
+        }
+    }
+}
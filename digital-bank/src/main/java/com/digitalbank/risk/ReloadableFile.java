@@ -0,0 +1,50 @@
+package com.digitalbank.risk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+// 记录本地文件上次加载时的修改时间和大小，供定时任务判断文件是否需要重新加载
+public class ReloadableFile {
+    private final Path path;
+    private FileTime lastModified;
+    private long lastSize = -1;
+
+    public ReloadableFile(String location) {
+        this.path = location == null || location.isBlank() ? null : Path.of(location);
+    }
+
+    public boolean isConfigured() {
+        return path != null;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // 文件存在且自上次标记后有变化时返回true；文件不存在或读取属性失败时返回false，沿用已加载的内容
+    public synchronized boolean hasChanged() {
+        if (path == null || !Files.isRegularFile(path)) {
+            return false;
+        }
+        try {
+            FileTime modified = Files.getLastModifiedTime(path);
+            long size = Files.size(path);
+            return !modified.equals(lastModified) || size != lastSize;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // 加载成功后调用，记下本次加载对应的文件状态
+    public synchronized void markLoaded() {
+        try {
+            lastModified = Files.getLastModifiedTime(path);
+            lastSize = Files.size(path);
+        } catch (IOException e) {
+            lastModified = null;
+            lastSize = -1;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.digitalbank.risk;
+
+import com.digitalbank.entity.Account;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// 一次风控检查的输入，规则条件只从这里取值
+@Data
+public class RiskContext {
+    private String type;
+    private BigDecimal amountValue;
+    private double amount;
+    private String accountNumber;
+    private String targetAccountNumber;
+    private int hour;
+
+    // 当日已取款金额（元，不含本笔）
+    private double dailyWithdrawal;
+
+    // 1分钟/1小时/24小时窗口内的笔数，随后依次是三个窗口的金额（分），均已包含本笔
+    private final long[] velocity = new long[VelocityTracker.WINDOWS * 2];
+
+    // 只有规则用到账户状态或类型时才加载账户
+    private Supplier<Account> accountLoader;
+    private Account account;
+    private boolean accountLoaded;
+
+    // 转账评分（0~1），未评分时为0
+    private double score;
+
+    // 实际命中的规则，供影子规则对比
+    private final List<RiskRule> firedRules = new ArrayList<>(2);
+
+    public RiskContext(String type, String accountNumber, String targetAccountNumber, BigDecimal amount) {
+        this.type = type;
+        this.accountNumber = accountNumber;
+        this.targetAccountNumber = targetAccountNumber;
+        this.amountValue = amount;
+        this.amount = amount.doubleValue();
+    }
+
+    // 复制检查输入给影子规则在其他线程上使用，不含已命中的规则
+    public RiskContext snapshot() {
+        RiskContext copy = new RiskContext(type, accountNumber, targetAccountNumber, amountValue);
+        copy.hour = hour;
+        copy.dailyWithdrawal = dailyWithdrawal;
+        System.arraycopy(velocity, 0, copy.velocity, 0, velocity.length);
+        copy.accountLoader = accountLoader;
+        copy.account = account;
+        copy.accountLoaded = accountLoaded;
+        return copy;
+    }
+
+    public Account getAccount() {
+        if (!accountLoaded) {
+            accountLoaded = true;
+            if (account == null && accountLoader != null) {
+                account = accountLoader.get();
+            }
+        }
+        return account;
+    }
+}
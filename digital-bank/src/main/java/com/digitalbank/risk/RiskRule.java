@@ -0,0 +1,46 @@
+package com.digitalbank.risk;
+
+import lombok.Getter;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// 编译后的一条风控规则：条件和描述模板在加载时已转换成lambda，检查时不再解析文本
+@Getter
+public class RiskRule {
+    public enum Action { RECORD, REJECT }
+
+    private final String name;
+    // 适用的交易类型，为空表示适用全部类型
+    private final Set<String> types;
+    private final Predicate<RiskContext> condition;
+    private final Action action;
+    private final String riskType;
+    private final String riskLevel;
+    private final Function<RiskContext, String> description;
+    // 条件引用了当日取款额，取款时需在计数器内原子地判断
+    private final boolean usesDailyWithdrawal;
+    private final boolean usesAccount;
+
+    RiskRule(String name, Set<String> types, Predicate<RiskContext> condition, Action action,
+             String riskType, String riskLevel, Function<RiskContext, String> description,
+             boolean usesDailyWithdrawal, boolean usesAccount) {
+        this.name = name;
+        this.types = types;
+        this.condition = condition;
+        this.action = action;
+        this.riskType = riskType;
+        this.riskLevel = riskLevel;
+        this.description = description;
+        this.usesDailyWithdrawal = usesDailyWithdrawal;
+        this.usesAccount = usesAccount;
+    }
+
+    public boolean matches(RiskContext context) {
+        return condition.test(context);
+    }
+
+    public String describe(RiskContext context) {
+        return description.apply(context);
+    }
+}
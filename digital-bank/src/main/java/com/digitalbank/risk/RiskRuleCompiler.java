@@ -0,0 +1,377 @@
+package com.digitalbank.risk;
+
+import com.digitalbank.entity.Account;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+// 风控规则文本编译器。每行一条规则：
+//   规则名: 交易类型[,交易类型]|* when 条件 then RECORD 风险类型 风险等级 "描述"
+//   规则名: 交易类型[,交易类型]|* when 条件 then REJECT "拒绝原因"
+// 条件支持 and/or/not、括号、比较运算(> >= < <= = !=)、加减乘、in ('A','B')；
+// 描述中的 {amount} {account} {target} {type} 在告警时替换为实际值
+public final class RiskRuleCompiler {
+    private static final Map<String, ToDoubleFunction<RiskContext>> NUMBER_FIELDS = new HashMap<>();
+    private static final Map<String, Function<RiskContext, String>> STRING_FIELDS = new HashMap<>();
+
+    static {
+        NUMBER_FIELDS.put("amount", RiskContext::getAmount);
+        NUMBER_FIELDS.put("hour", RiskContext::getHour);
+        NUMBER_FIELDS.put("dailyWithdrawal", RiskContext::getDailyWithdrawal);
+        NUMBER_FIELDS.put("minuteCount", c -> c.getVelocity()[0]);
+        NUMBER_FIELDS.put("hourCount", c -> c.getVelocity()[1]);
+        NUMBER_FIELDS.put("dayCount", c -> c.getVelocity()[2]);
+        NUMBER_FIELDS.put("minuteAmount", c -> c.getVelocity()[3] / 100.0);
+        NUMBER_FIELDS.put("hourAmount", c -> c.getVelocity()[4] / 100.0);
+        NUMBER_FIELDS.put("dayAmount", c -> c.getVelocity()[5] / 100.0);
+
+        STRING_FIELDS.put("type", RiskContext::getType);
+        STRING_FIELDS.put("account", RiskContext::getAccountNumber);
+        STRING_FIELDS.put("target", RiskContext::getTargetAccountNumber);
+        STRING_FIELDS.put("accountStatus", c -> {
+            Account account = c.getAccount();
+            return account == null ? null : account.getStatus();
+        });
+        STRING_FIELDS.put("accountType", c -> {
+            Account account = c.getAccount();
+            return account == null ? null : account.getAccountType();
+        });
+    }
+
+    private RiskRuleCompiler() {
+    }
+
+    public static List<RiskRule> compile(List<String> lines) {
+        List<RiskRule> rules = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                RiskRule rule = new LineParser(line).parse();
+                if (!names.add(rule.getName())) {
+                    throw new IllegalArgumentException("规则名重复：" + rule.getName());
+                }
+                rules.add(rule);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("第" + (i + 1) + "行：" + e.getMessage(), e);
+            }
+        }
+        return rules;
+    }
+
+    private static class LineParser {
+        private final String name;
+        private final List<String> tokens;
+        private int pos;
+        private boolean usesDailyWithdrawal;
+        private boolean usesAccount;
+
+        LineParser(String line) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("缺少规则名");
+            }
+            this.name = line.substring(0, colon).trim();
+            this.tokens = tokenize(line.substring(colon + 1));
+        }
+
+        RiskRule parse() {
+            Set<String> types = new LinkedHashSet<>();
+            if (peekIs("*")) {
+                next();
+            } else {
+                types.add(next());
+                while (peekIs(",")) {
+                    next();
+                    types.add(next());
+                }
+            }
+
+            expect("when");
+            Predicate<RiskContext> condition = parseOr();
+            expect("then");
+
+            String action = next();
+            RiskRule rule;
+            if ("RECORD".equals(action)) {
+                String riskType = next();
+                String riskLevel = next();
+                Function<RiskContext, String> description = template(unquote(next()));
+                rule = new RiskRule(name, types, condition, RiskRule.Action.RECORD, riskType, riskLevel,
+                        description, usesDailyWithdrawal, usesAccount);
+            } else if ("REJECT".equals(action)) {
+                Function<RiskContext, String> message = template(unquote(next()));
+                rule = new RiskRule(name, types, condition, RiskRule.Action.REJECT, null, null,
+                        message, usesDailyWithdrawal, usesAccount);
+            } else {
+                throw new IllegalArgumentException("未知动作：" + action);
+            }
+            if (pos < tokens.size()) {
+                throw new IllegalArgumentException("多余内容：" + tokens.get(pos));
+            }
+            return rule;
+        }
+
+        private Predicate<RiskContext> parseOr() {
+            Predicate<RiskContext> left = parseAnd();
+            while (peekIs("or")) {
+                next();
+                Predicate<RiskContext> l = left;
+                Predicate<RiskContext> r = parseAnd();
+                left = c -> l.test(c) || r.test(c);
+            }
+            return left;
+        }
+
+        private Predicate<RiskContext> parseAnd() {
+            Predicate<RiskContext> left = parseNot();
+            while (peekIs("and")) {
+                next();
+                Predicate<RiskContext> l = left;
+                Predicate<RiskContext> r = parseNot();
+                left = c -> l.test(c) && r.test(c);
+            }
+            return left;
+        }
+
+        private Predicate<RiskContext> parseNot() {
+            if (peekIs("not")) {
+                next();
+                Predicate<RiskContext> inner = parseNot();
+                return c -> !inner.test(c);
+            }
+            if (peekIs("(") && isGroupedCondition()) {
+                next();
+                Predicate<RiskContext> inner = parseOr();
+                expect(")");
+                return inner;
+            }
+            return parseComparison();
+        }
+
+        // 区分条件分组括号和算术括号：括号内出现比较运算或逻辑运算即为条件分组
+        private boolean isGroupedCondition() {
+            int depth = 0;
+            for (int i = pos; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                if ("(".equals(token)) {
+                    depth++;
+                } else if (")".equals(token)) {
+                    depth--;
+                    if (depth == 0) {
+                        return false;
+                    }
+                } else if (depth >= 1 && isComparisonOrLogic(token)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Predicate<RiskContext> parseComparison() {
+            if (STRING_FIELDS.containsKey(peek())) {
+                Function<RiskContext, String> field = stringField(next());
+                String op = next();
+                if ("in".equals(op)) {
+                    Set<String> values = new HashSet<>();
+                    expect("(");
+                    values.add(unquote(next()));
+                    while (peekIs(",")) {
+                        next();
+                        values.add(unquote(next()));
+                    }
+                    expect(")");
+                    return c -> values.contains(field.apply(c));
+                }
+                String value = unquote(next());
+                return switch (op) {
+                    case "=", "==" -> c -> value.equals(field.apply(c));
+                    case "!=" -> c -> !value.equals(field.apply(c));
+                    default -> throw new IllegalArgumentException("文本字段不支持运算符：" + op);
+                };
+            }
+
+            ToDoubleFunction<RiskContext> left = parseSum();
+            String op = next();
+            ToDoubleFunction<RiskContext> right = parseSum();
+            return switch (op) {
+                case ">" -> c -> left.applyAsDouble(c) > right.applyAsDouble(c);
+                case ">=" -> c -> left.applyAsDouble(c) >= right.applyAsDouble(c);
+                case "<" -> c -> left.applyAsDouble(c) < right.applyAsDouble(c);
+                case "<=" -> c -> left.applyAsDouble(c) <= right.applyAsDouble(c);
+                case "=", "==" -> c -> left.applyAsDouble(c) == right.applyAsDouble(c);
+                case "!=" -> c -> left.applyAsDouble(c) != right.applyAsDouble(c);
+                default -> throw new IllegalArgumentException("未知比较运算符：" + op);
+            };
+        }
+
+        private ToDoubleFunction<RiskContext> parseSum() {
+            ToDoubleFunction<RiskContext> left = parseProduct();
+            while (peekIs("+") || peekIs("-")) {
+                String op = next();
+                ToDoubleFunction<RiskContext> l = left;
+                ToDoubleFunction<RiskContext> r = parseProduct();
+                left = "+".equals(op)
+                        ? c -> l.applyAsDouble(c) + r.applyAsDouble(c)
+                        : c -> l.applyAsDouble(c) - r.applyAsDouble(c);
+            }
+            return left;
+        }
+
+        private ToDoubleFunction<RiskContext> parseProduct() {
+            ToDoubleFunction<RiskContext> left = parseOperand();
+            while (peekIs("*")) {
+                next();
+                ToDoubleFunction<RiskContext> l = left;
+                ToDoubleFunction<RiskContext> r = parseOperand();
+                left = c -> l.applyAsDouble(c) * r.applyAsDouble(c);
+            }
+            return left;
+        }
+
+        private ToDoubleFunction<RiskContext> parseOperand() {
+            String token = next();
+            if ("(".equals(token)) {
+                ToDoubleFunction<RiskContext> inner = parseSum();
+                expect(")");
+                return inner;
+            }
+            ToDoubleFunction<RiskContext> field = NUMBER_FIELDS.get(token);
+            if (field != null) {
+                if ("dailyWithdrawal".equals(token)) {
+                    usesDailyWithdrawal = true;
+                }
+                return field;
+            }
+            try {
+                double value = Double.parseDouble(token);
+                return c -> value;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("未知字段或数值：" + token);
+            }
+        }
+
+        private Function<RiskContext, String> stringField(String name) {
+            if ("accountStatus".equals(name) || "accountType".equals(name)) {
+                usesAccount = true;
+            }
+            return STRING_FIELDS.get(name);
+        }
+
+        private String peek() {
+            return pos < tokens.size() ? tokens.get(pos) : null;
+        }
+
+        private boolean peekIs(String token) {
+            return token.equals(peek());
+        }
+
+        private String next() {
+            if (pos >= tokens.size()) {
+                throw new IllegalArgumentException("规则不完整");
+            }
+            return tokens.get(pos++);
+        }
+
+        private void expect(String token) {
+            String actual = next();
+            if (!token.equals(actual)) {
+                throw new IllegalArgumentException("此处应为 " + token + "，实际为 " + actual);
+            }
+        }
+    }
+
+    private static boolean isComparisonOrLogic(String token) {
+        return switch (token) {
+            case ">", ">=", "<", "<=", "=", "==", "!=", "and", "or", "not", "in" -> true;
+            default -> false;
+        };
+    }
+
+    private static String unquote(String token) {
+        if (token.length() >= 2 && (token.startsWith("\"") || token.startsWith("'"))) {
+            return token.substring(1, token.length() - 1);
+        }
+        return token;
+    }
+
+    // 描述模板在编译时拆成常量片段和占位符取值函数
+    private static Function<RiskContext, String> template(String text) {
+        List<Function<RiskContext, String>> parts = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            int open = text.indexOf('{', i);
+            int close = open < 0 ? -1 : text.indexOf('}', open);
+            if (open < 0 || close < 0) {
+                String literal = text.substring(i);
+                parts.add(c -> literal);
+                break;
+            }
+            if (open > i) {
+                String literal = text.substring(i, open);
+                parts.add(c -> literal);
+            }
+            String name = text.substring(open + 1, close);
+            parts.add(switch (name) {
+                case "amount" -> c -> String.valueOf(c.getAmountValue());
+                case "account" -> RiskContext::getAccountNumber;
+                case "target" -> RiskContext::getTargetAccountNumber;
+                case "type" -> RiskContext::getType;
+                default -> throw new IllegalArgumentException("未知占位符：{" + name + "}");
+            });
+            i = close + 1;
+        }
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        return c -> {
+            StringBuilder sb = new StringBuilder();
+            for (Function<RiskContext, String> part : parts) {
+                sb.append(part.apply(c));
+            }
+            return sb.toString();
+        };
+    }
+
+    private static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < line.length()) {
+            char ch = line.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                i++;
+            } else if (ch == '"' || ch == '\'') {
+                int end = line.indexOf(ch, i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("引号未闭合");
+                }
+                tokens.add(line.substring(i, end + 1));
+                i = end + 1;
+            } else if (Character.isLetterOrDigit(ch) || ch == '_' || ch == '.') {
+                int start = i;
+                while (i < line.length() && (Character.isLetterOrDigit(line.charAt(i))
+                        || line.charAt(i) == '_' || line.charAt(i) == '.')) {
+                    i++;
+                }
+                tokens.add(line.substring(start, i));
+            } else if ((ch == '>' || ch == '<' || ch == '!' || ch == '=') && i + 1 < line.length() && line.charAt(i + 1) == '=') {
+                tokens.add(line.substring(i, i + 2));
+                i += 2;
+            } else {
+                tokens.add(String.valueOf(ch));
+                i++;
+            }
+        }
+        return tokens;
+    }
+}
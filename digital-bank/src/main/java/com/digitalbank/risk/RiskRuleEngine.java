@@ -0,0 +1,161 @@
+package com.digitalbank.risk;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// 风控规则引擎：规则文本在加载时编译并按交易类型分组成数组，检查时只顺序执行已编译的条件。
+// 配置了规则文件时定期检查文件变化，编译成功后整体替换；编译失败保留旧规则。
+// 影子规则文件按同样方式加载，只交给ShadowRiskEvaluator离线对比，不影响实际交易
+@Slf4j
+@Component
+public class RiskRuleEngine {
+    private static final String DEFAULT_RULES = "risk-rules.conf";
+
+    @Value("${digitalbank.risk.rules.file:}")
+    private String file;
+
+    @Value("${digitalbank.risk.shadow.file:}")
+    private String shadowFile;
+
+    private ReloadableFile source;
+    private ReloadableFile shadowSource;
+    private volatile RiskRuleSet ruleSet;
+    private volatile RiskRuleSet shadowRuleSet;
+
+    private final Map<String, Timing> timings = new ConcurrentHashMap<>();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong reloadErrors = new AtomicLong();
+    private volatile String lastError;
+
+    @PostConstruct
+    public void init() throws IOException {
+        source = new ReloadableFile(file);
+        shadowSource = new ReloadableFile(shadowFile);
+        shadowRuleSet = null;
+        if (source.isConfigured()) {
+            reload();
+        }
+        if (!source.isConfigured() || ruleSet == null) {
+            // 未配置规则文件，或启动时规则文件不可用，使用内置规则
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new ClassPathResource(DEFAULT_RULES).getInputStream(), StandardCharsets.UTF_8))) {
+                ruleSet = new RiskRuleSet(RiskRuleCompiler.compile(reader.lines().toList()), "classpath:" + DEFAULT_RULES);
+            }
+        }
+        if (shadowSource.isConfigured()) {
+            reload();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${digitalbank.risk.rules.reload-interval-ms:10000}")
+    public void reload() {
+        RiskRuleSet live = load(source, "风控规则");
+        if (live != null) {
+            ruleSet = live;
+        }
+        RiskRuleSet shadow = load(shadowSource, "影子规则");
+        if (shadow != null) {
+            shadowRuleSet = shadow;
+        }
+    }
+
+    private RiskRuleSet load(ReloadableFile file, String name) {
+        if (!file.hasChanged()) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file.getPath(), StandardCharsets.UTF_8);
+            RiskRuleSet compiled = new RiskRuleSet(RiskRuleCompiler.compile(lines), file.getPath().toString());
+            file.markLoaded();
+            reloads.incrementAndGet();
+            lastError = null;
+            log.info("{}已加载，条数：{}", name, compiled.size());
+            return compiled;
+        } catch (IOException | IllegalArgumentException e) {
+            // 标记为已处理，文件再次修改后才重新编译
+            file.markLoaded();
+            reloadErrors.incrementAndGet();
+            lastError = name + "：" + e.getMessage();
+            log.warn("{}加载失败，继续使用原规则：{}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    // 返回适用于该交易类型、且不在取款计数器内判断的规则
+    public RiskRule[] rulesFor(String type) {
+        return ruleSet.rulesFor(type);
+    }
+
+    // 取款时需要在计数器内与当日取款额一起原子判断的拒绝规则
+    public RiskRule[] withdrawalLimitRules() {
+        return ruleSet.withdrawalLimitRules();
+    }
+
+    public boolean needsAccount(String type) {
+        return ruleSet.needsAccount(type);
+    }
+
+    // 未配置影子规则文件时返回null
+    public RiskRuleSet getShadowRuleSet() {
+        return shadowRuleSet;
+    }
+
+    public void recordTiming(String type, long nanos) {
+        timings.computeIfAbsent(type, key -> new Timing()).record(nanos);
+    }
+
+    public Map<String, Object> getStats() {
+        RiskRuleSet current = ruleSet;
+        RiskRuleSet shadow = shadowRuleSet;
+        Map<String, Object> evaluation = new HashMap<>();
+        timings.forEach((type, timing) -> {
+            long count = timing.count.sum();
+            Map<String, Object> stat = new HashMap<>();
+            stat.put("evaluations", count);
+            stat.put("avgNanos", count == 0 ? 0 : timing.totalNanos.sum() / count);
+            stat.put("maxNanos", timing.maxNanos.get());
+            evaluation.put(type, stat);
+        });
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("source", current.getSource());
+        stats.put("rules", current.size());
+        stats.put("loadedAt", current.getLoadedAt());
+        stats.put("shadowSource", shadow == null ? null : shadow.getSource());
+        stats.put("shadowRules", shadow == null ? 0 : shadow.size());
+        stats.put("reloads", reloads.get());
+        stats.put("reloadErrors", reloadErrors.get());
+        stats.put("lastError", lastError);
+        stats.put("evaluation", evaluation);
+        return stats;
+    }
+
+    private static class Timing {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos.get()) {
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.digitalbank.risk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 一次编译得到的规则集合，按交易类型分组成数组；创建后不再修改，可被多线程共享
+public class RiskRuleSet {
+    private static final RiskRule[] NO_RULES = new RiskRule[0];
+    private static final String[] TYPES = {"DEPOSIT", "WITHDRAWAL", "TRANSFER"};
+
+    private final Map<String, RiskRule[]> byType = new HashMap<>();
+    private final RiskRule[] withdrawalLimitRules;
+    private final Set<String> typesNeedingAccount = new HashSet<>();
+    private final int size;
+    private final String source;
+    private final long loadedAt = System.currentTimeMillis();
+
+    RiskRuleSet(List<RiskRule> rules, String source) {
+        this.size = rules.size();
+        this.source = source;
+        List<RiskRule> limitRules = new ArrayList<>();
+        Map<String, List<RiskRule>> grouped = new HashMap<>();
+        for (String type : TYPES) {
+            grouped.put(type, new ArrayList<>());
+        }
+        for (RiskRule rule : rules) {
+            for (Map.Entry<String, List<RiskRule>> entry : grouped.entrySet()) {
+                String type = entry.getKey();
+                if (!rule.getTypes().isEmpty() && !rule.getTypes().contains(type)) {
+                    continue;
+                }
+                if ("WITHDRAWAL".equals(type) && rule.isUsesDailyWithdrawal()
+                        && rule.getAction() == RiskRule.Action.REJECT) {
+                    limitRules.add(rule);
+                } else {
+                    entry.getValue().add(rule);
+                }
+                if (rule.isUsesAccount()) {
+                    typesNeedingAccount.add(type);
+                }
+            }
+        }
+        grouped.forEach((type, list) -> byType.put(type, list.toArray(NO_RULES)));
+        this.withdrawalLimitRules = limitRules.toArray(NO_RULES);
+    }
+
+    // 适用于该交易类型、且不在取款计数器内判断的规则
+    public RiskRule[] rulesFor(String type) {
+        return byType.getOrDefault(type, NO_RULES);
+    }
+
+    // 取款时需要在计数器内与当日取款额一起原子判断的拒绝规则
+    public RiskRule[] withdrawalLimitRules() {
+        return withdrawalLimitRules;
+    }
+
+    public boolean needsAccount(String type) {
+        return typesNeedingAccount.contains(type);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+}
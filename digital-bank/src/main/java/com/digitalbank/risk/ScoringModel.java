@@ -0,0 +1,143 @@
+package com.digitalbank.risk;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 转账评分模型（逻辑回归）：score = 1 / (1 + e^-(bias + Σ weight·feature))。
+// 模型文件每行一项 key = value，# 开头为注释：
+//   bias = -9.0
+//   weight.amount = 0.55        特征名见 FEATURES
+//   threshold.LOW = 0.6         评分达到阈值时给出对应风险等级，LOW ≤ MEDIUM ≤ HIGH
+public class ScoringModel {
+    public static final int AMOUNT = 0;
+    public static final int NEW_COUNTERPARTY = 1;
+    public static final int MINUTE_COUNT = 2;
+    public static final int HOUR_COUNT = 3;
+    public static final int DAY_COUNT = 4;
+    public static final int DAY_AMOUNT = 5;
+    public static final int ACCOUNT_AGE_DAYS = 6;
+    public static final int NIGHT = 7;
+
+    // 新收款方和夜间为0/1，其余（金额、笔数、当日累计金额、开户天数）取 ln(1+x)
+    public static final String[] FEATURES = {"amount", "newCounterparty", "minuteCount", "hourCount",
+            "dayCount", "dayAmount", "accountAgeDays", "night"};
+
+    private static final String[] LEVELS = {"HIGH", "MEDIUM", "LOW"};
+
+    private final double bias;
+    private final double[] weights;
+    // 与LEVELS对应，从高到低
+    private final double[] thresholds;
+    private final String source;
+    private final long loadedAt = System.currentTimeMillis();
+
+    private ScoringModel(double bias, double[] weights, double[] thresholds, String source) {
+        this.bias = bias;
+        this.weights = weights;
+        this.thresholds = thresholds;
+        this.source = source;
+    }
+
+    public static ScoringModel parse(List<String> lines, String source) {
+        Map<String, Integer> featureIndex = new HashMap<>();
+        for (int i = 0; i < FEATURES.length; i++) {
+            featureIndex.put(FEATURES[i], i);
+        }
+        double bias = 0;
+        double[] weights = new double[FEATURES.length];
+        double[] thresholds = {Double.NaN, Double.NaN, Double.NaN};
+        int lineNumber = 0;
+        for (String raw : lines) {
+            lineNumber++;
+            String line = raw.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int eq = line.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("第" + lineNumber + "行缺少'='：" + line);
+            }
+            String key = line.substring(0, eq).strip();
+            double value;
+            try {
+                value = Double.parseDouble(line.substring(eq + 1).strip());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("第" + lineNumber + "行数值无效：" + line);
+            }
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                throw new IllegalArgumentException("第" + lineNumber + "行数值无效：" + line);
+            }
+            if ("bias".equals(key)) {
+                bias = value;
+            } else if (key.startsWith("weight.") && featureIndex.containsKey(key.substring(7))) {
+                weights[featureIndex.get(key.substring(7))] = value;
+            } else if (key.startsWith("threshold.") && Arrays.asList(LEVELS).contains(key.substring(10))) {
+                if (value <= 0 || value > 1) {
+                    throw new IllegalArgumentException("第" + lineNumber + "行阈值应在(0, 1]之间：" + line);
+                }
+                thresholds[Arrays.asList(LEVELS).indexOf(key.substring(10))] = value;
+            } else {
+                throw new IllegalArgumentException("第" + lineNumber + "行未知配置项：" + key);
+            }
+        }
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (Double.isNaN(thresholds[i])) {
+                throw new IllegalArgumentException("缺少阈值：threshold." + LEVELS[i]);
+            }
+        }
+        if (thresholds[0] < thresholds[1] || thresholds[1] < thresholds[2]) {
+            throw new IllegalArgumentException("阈值应满足 LOW ≤ MEDIUM ≤ HIGH");
+        }
+        return new ScoringModel(bias, weights, thresholds, source);
+    }
+
+    public boolean uses(int feature) {
+        return weights[feature] != 0;
+    }
+
+    public double score(double[] features) {
+        double z = bias;
+        for (int i = 0; i < weights.length; i++) {
+            z += weights[i] * features[i];
+        }
+        return 1.0 / (1.0 + Math.exp(-z));
+    }
+
+    // 未达到最低阈值时返回null
+    public String levelFor(double score) {
+        for (int i = 0; i < thresholds.length; i++) {
+            if (score >= thresholds[i]) {
+                return LEVELS[i];
+            }
+        }
+        return null;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> weightMap = new HashMap<>();
+        for (int i = 0; i < FEATURES.length; i++) {
+            weightMap.put(FEATURES[i], weights[i]);
+        }
+        Map<String, Object> thresholdMap = new HashMap<>();
+        for (int i = 0; i < LEVELS.length; i++) {
+            thresholdMap.put(LEVELS[i], thresholds[i]);
+        }
+        Map<String, Object> model = new HashMap<>();
+        model.put("bias", bias);
+        model.put("weights", weightMap);
+        model.put("thresholds", thresholdMap);
+        model.put("source", source);
+        model.put("loadedAt", loadedAt);
+        return model;
+    }
+}
\ No newline at end of file
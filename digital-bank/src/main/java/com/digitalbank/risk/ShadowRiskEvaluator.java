@@ -0,0 +1,190 @@
+package com.digitalbank.risk;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// 影子规则评估：每笔交易的风控输入复制一份交给独立线程池，用影子规则重新判断并与实际结果对比，
+// 只统计差异，不产生风控记录也不拒绝交易。线程池队列有界，满了直接丢弃，不会拖慢记账
+@Slf4j
+@Component
+public class ShadowRiskEvaluator {
+    private static final int RECENT_DIFFS = 100;
+
+    @Autowired
+    private RiskRuleEngine riskRuleEngine;
+
+    @Value("${digitalbank.risk.shadow.threads:1}")
+    private int threads;
+
+    @Value("${digitalbank.risk.shadow.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder agreed = new LongAdder();
+    private final LongAdder shadowOnlyRejects = new LongAdder();
+    private final LongAdder liveOnlyRejects = new LongAdder();
+    private final LongAdder shadowOnlyRecords = new LongAdder();
+    private final LongAdder liveOnlyRecords = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Map<String, LongAdder> shadowRuleHits = new ConcurrentHashMap<>();
+    private final ArrayDeque<String> recentDiffs = new ArrayDeque<>(RECENT_DIFFS);
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "risk-shadow-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (r, pool) -> shed.increment());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return riskRuleEngine.getShadowRuleSet() != null;
+    }
+
+    // 在记账线程上调用：只复制输入并尝试入队，队列满时计数后丢弃
+    public void submit(RiskContext context) {
+        RiskRuleSet shadow = riskRuleEngine.getShadowRuleSet();
+        if (shadow == null) {
+            return;
+        }
+        RiskContext snapshot = context.snapshot();
+        List<RiskRule> liveFired = List.copyOf(context.getFiredRules());
+        boolean liveRejected = false;
+        for (RiskRule rule : liveFired) {
+            if (rule.getAction() == RiskRule.Action.REJECT) {
+                liveRejected = true;
+                break;
+            }
+        }
+        boolean rejected = liveRejected;
+        submitted.increment();
+        executor.execute(() -> evaluate(shadow, snapshot, liveFired, rejected));
+    }
+
+    private void evaluate(RiskRuleSet shadow, RiskContext context, List<RiskRule> liveFired, boolean liveRejected) {
+        try {
+            List<RiskRule> fired = new ArrayList<>(2);
+            boolean rejected = fire(shadow.rulesFor(context.getType()), context, fired);
+            if (!rejected && "WITHDRAWAL".equals(context.getType())) {
+                rejected = fire(shadow.withdrawalLimitRules(), context, fired);
+            }
+            for (RiskRule rule : fired) {
+                shadowRuleHits.computeIfAbsent(rule.getName(), key -> new LongAdder()).increment();
+            }
+            compare(context, liveFired, liveRejected, fired, rejected);
+            evaluated.increment();
+        } catch (Exception e) {
+            errors.increment();
+            log.debug("影子规则评估出错：{}", e.getMessage());
+        }
+    }
+
+    // 与实际检查相同的语义：按顺序执行，遇到拒绝规则即停止
+    private boolean fire(RiskRule[] rules, RiskContext context, List<RiskRule> fired) {
+        for (RiskRule rule : rules) {
+            if (rule.matches(context)) {
+                fired.add(rule);
+                if (rule.getAction() == RiskRule.Action.REJECT) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // 两套规则的规则名不一定相同，按结果比较：是否拒绝，以及产生的风险类型/等级
+    private void compare(RiskContext context, List<RiskRule> liveFired, boolean liveRejected,
+                         List<RiskRule> shadowFired, boolean shadowRejected) {
+        TreeSet<String> liveRecords = recordKeys(liveFired);
+        TreeSet<String> shadowRecords = recordKeys(shadowFired);
+        boolean same = liveRejected == shadowRejected && liveRecords.equals(shadowRecords);
+        if (same) {
+            agreed.increment();
+            return;
+        }
+        if (shadowRejected && !liveRejected) {
+            shadowOnlyRejects.increment();
+        } else if (liveRejected && !shadowRejected) {
+            liveOnlyRejects.increment();
+        }
+        if (!liveRecords.containsAll(shadowRecords)) {
+            shadowOnlyRecords.increment();
+        }
+        if (!shadowRecords.containsAll(liveRecords)) {
+            liveOnlyRecords.increment();
+        }
+        String diff = context.getType() + " " + context.getAccountNumber() + " " + context.getAmountValue()
+                + " 实际：" + (liveRejected ? "拒绝" : "通过") + liveRecords
+                + " 影子：" + (shadowRejected ? "拒绝" : "通过") + shadowRecords;
+        synchronized (recentDiffs) {
+            if (recentDiffs.size() == RECENT_DIFFS) {
+                recentDiffs.pollFirst();
+            }
+            recentDiffs.addLast(diff);
+        }
+    }
+
+    private TreeSet<String> recordKeys(List<RiskRule> fired) {
+        TreeSet<String> keys = new TreeSet<>();
+        for (RiskRule rule : fired) {
+            if (rule.getAction() == RiskRule.Action.RECORD) {
+                keys.add(rule.getRiskType() + "/" + rule.getRiskLevel());
+            }
+        }
+        return keys;
+    }
+
+    public Map<String, Object> getStats() {
+        RiskRuleSet shadow = riskRuleEngine.getShadowRuleSet();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", shadow != null);
+        stats.put("source", shadow == null ? null : shadow.getSource());
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("submitted", submitted.sum());
+        stats.put("shed", shed.sum());
+        stats.put("evaluated", evaluated.sum());
+        stats.put("agreed", agreed.sum());
+        stats.put("shadowOnlyRejects", shadowOnlyRejects.sum());
+        stats.put("liveOnlyRejects", liveOnlyRejects.sum());
+        stats.put("shadowOnlyRecords", shadowOnlyRecords.sum());
+        stats.put("liveOnlyRecords", liveOnlyRecords.sum());
+        stats.put("errors", errors.sum());
+        Map<String, Long> hits = new HashMap<>();
+        shadowRuleHits.forEach((name, count) -> hits.put(name, count.sum()));
+        stats.put("shadowRuleHits", hits);
+        synchronized (recentDiffs) {
+            stats.put("recentDiffs", new ArrayList<>(recentDiffs));
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,402 @@
+package com.digitalbank.risk;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// 近期转账关系图：只保存时间窗口内的转账边，用于发现资金回流（A→B→C→A）和多对一/一对多的过渡账户。
+// 边存放在固定容量的环形数组中，写满后覆盖最旧的边，堆占用在启动时即确定；
+// 每个账户的转出边、转入边通过数组下标串成由新到旧的链表。
+// 图只由一个后台线程读写，转账提交后把边放入队列即返回，不影响记账耗时
+@Slf4j
+@Component
+public class TransferGraph {
+    private static final int NONE = -1;
+
+    @Value("${digitalbank.risk.graph.edge-capacity:1000000}")
+    private int edgeCapacity;
+
+    @Value("${digitalbank.risk.graph.max-accounts:500000}")
+    private int maxAccounts;
+
+    @Value("${digitalbank.risk.graph.window-minutes:1440}")
+    private int windowMinutes;
+
+    @Value("${digitalbank.risk.graph.max-cycle-length:4}")
+    private int maxCycleLength;
+
+    @Value("${digitalbank.risk.graph.max-branches:32}")
+    private int maxBranches;
+
+    @Value("${digitalbank.risk.graph.fan-threshold:10}")
+    private int fanThreshold;
+
+    @Value("${digitalbank.risk.graph.queue-capacity:100000}")
+    private int queueCapacity;
+
+    // 边数组，下标为 序号 % 容量
+    private long[] edgeSeq;
+    private int[] edgeFrom;
+    private int[] edgeTo;
+    private int[] edgeTime;
+    private long[] edgeCents;
+    private int[] nextOut;
+    private int[] nextIn;
+    private long nextSeq;
+
+    // 账户数组，下标为账户在图中的编号
+    private int[] headOut;
+    private int[] headIn;
+    private int[] visitStamp;
+    private String[] accountNumbers;
+    private int stamp;
+    private long windowCents;
+    private final Map<String, Integer> accountIndex = new HashMap<>();
+    private final ArrayDeque<Integer> freeAccounts = new ArrayDeque<>();
+    private int usedAccounts;
+    private volatile int liveAccounts;
+
+    // DFS复用的路径数组
+    private int[] pathNodes;
+    private int[] pathEdges;
+
+    private final long epochSeconds = System.currentTimeMillis() / 1000;
+    private BlockingQueue<PendingEdge> inbox;
+    private Thread worker;
+    private volatile boolean running = true;
+    private Consumer<Alert> alertSink = alert -> { };
+
+    private final AtomicLong edges = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong cycles = new AtomicLong();
+    private final AtomicLong fanIns = new AtomicLong();
+    private final AtomicLong fanOuts = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+
+    public record Alert(String riskLevel, String description) {
+    }
+
+    private record PendingEdge(String from, String to, long cents, int time) {
+    }
+
+    @PostConstruct
+    public void start() {
+        edgeSeq = new long[edgeCapacity];
+        Arrays.fill(edgeSeq, -1);
+        edgeFrom = new int[edgeCapacity];
+        edgeTo = new int[edgeCapacity];
+        edgeTime = new int[edgeCapacity];
+        edgeCents = new long[edgeCapacity];
+        nextOut = new int[edgeCapacity];
+        nextIn = new int[edgeCapacity];
+
+        headOut = new int[maxAccounts];
+        headIn = new int[maxAccounts];
+        visitStamp = new int[maxAccounts];
+        accountNumbers = new String[maxAccounts];
+        Arrays.fill(headOut, NONE);
+        Arrays.fill(headIn, NONE);
+
+        pathNodes = new int[maxCycleLength + 1];
+        pathEdges = new int[maxCycleLength + 1];
+
+        inbox = new ArrayBlockingQueue<>(queueCapacity);
+        worker = new Thread(this::run, "transfer-graph");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(5000);
+    }
+
+    public void setAlertSink(Consumer<Alert> alertSink) {
+        this.alertSink = alertSink;
+    }
+
+    // 处于事务中时在提交后入队，回滚的转账不进入关系图
+    public void recordTransfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        if (fromAccountNumber == null || toAccountNumber == null || fromAccountNumber.equals(toAccountNumber)) {
+            return;
+        }
+        long cents = amount.setScale(2, RoundingMode.UP).unscaledValue().longValue();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(fromAccountNumber, toAccountNumber, cents);
+                }
+            });
+        } else {
+            enqueue(fromAccountNumber, toAccountNumber, cents);
+        }
+    }
+
+    private void enqueue(String from, String to, long cents) {
+        // 队列满时丢弃，只影响关系图分析，不影响转账
+        if (!inbox.offer(new PendingEdge(from, to, cents, currentTime()))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("edgeCapacity", edgeCapacity);
+        stats.put("accountCapacity", maxAccounts);
+        stats.put("edges", edges.get());
+        stats.put("accounts", liveAccounts);
+        stats.put("queueDepth", inbox.size());
+        stats.put("dropped", dropped.get());
+        stats.put("cycles", cycles.get());
+        stats.put("fanIns", fanIns.get());
+        stats.put("fanOuts", fanOuts.get());
+        stats.put("compactions", compactions.get());
+        // 边数组每条36字节，账户数组每个账户16字节（不含账号字符串和索引表）
+        stats.put("arrayBytes", edgeCapacity * 36L + maxAccounts * 16L);
+        return stats;
+    }
+
+    private void run() {
+        long lastCompaction = System.nanoTime();
+        while (running) {
+            try {
+                PendingEdge edge = inbox.poll(1, TimeUnit.SECONDS);
+                if (edge != null) {
+                    addEdge(edge.from(), edge.to(), edge.cents(), edge.time());
+                }
+                if (System.nanoTime() - lastCompaction > TimeUnit.MINUTES.toNanos(1)) {
+                    compact(currentTime());
+                    lastCompaction = System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("转账关系图处理出错", e);
+            }
+        }
+    }
+
+    private void addEdge(String fromAccountNumber, String toAccountNumber, long cents, int time) {
+        int from = accountId(fromAccountNumber, time);
+        int to = accountId(toAccountNumber, time);
+        if (from == NONE || to == NONE) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        long seq = nextSeq++;
+        int slot = (int) (seq % edgeCapacity);
+        // 先取原链表头再覆盖槽位；链表头恰好是被覆盖的最旧边时，新边就是该账户唯一的边
+        int outNext = headOut[from] != slot && validOut(headOut[from], from, time) ? headOut[from] : NONE;
+        int inNext = headIn[to] != slot && validIn(headIn[to], to, time) ? headIn[to] : NONE;
+        edgeSeq[slot] = seq;
+        edgeFrom[slot] = from;
+        edgeTo[slot] = to;
+        edgeTime[slot] = time;
+        edgeCents[slot] = cents;
+        nextOut[slot] = outNext;
+        nextIn[slot] = inNext;
+        headOut[from] = slot;
+        headIn[to] = slot;
+        edges.incrementAndGet();
+
+        detectCycle(from, to, slot, time);
+        detectFan(from, to, slot, time);
+    }
+
+    // 新边 from→to 之前，若存在 to 出发、时间递增且早于本边的路径回到 from，则构成资金回流
+    private void detectCycle(int from, int to, int slot, int time) {
+        pathNodes[0] = from;
+        pathEdges[0] = slot;
+        pathNodes[1] = to;
+        int length = searchPath(to, from, windowStart(time), time, 1);
+        if (length > 0) {
+            cycles.incrementAndGet();
+            StringBuilder path = new StringBuilder();
+            // 按转账时间顺序输出：to→...→from→to
+            for (int i = 1; i <= length; i++) {
+                path.append(accountNumbers[pathNodes[i]]).append("→");
+            }
+            path.append(accountNumbers[to]);
+            alertSink.accept(new Alert("HIGH", "资金回流：" + path));
+        }
+    }
+
+    // 返回回到目标账户时的路径边数，未找到返回0
+    private int searchPath(int node, int target, int minTime, int maxTime, int depth) {
+        if (depth >= maxCycleLength) {
+            return 0;
+        }
+        int branches = 0;
+        int previous = NONE;
+        for (int e = headOut[node]; e != NONE && branches < maxBranches; e = nextOut[e]) {
+            if (!isLinkValid(e, previous, node, true, minTime)) {
+                break;
+            }
+            previous = e;
+            int edgeTimeValue = edgeTime[e];
+            if (edgeTimeValue < minTime || edgeTimeValue > maxTime || e == pathEdges[0]) {
+                continue;
+            }
+            branches++;
+            int next = edgeTo[e];
+            pathNodes[depth + 1] = next;
+            if (next == target) {
+                return depth + 1;
+            }
+            boolean onPath = false;
+            for (int i = 1; i <= depth; i++) {
+                if (pathNodes[i] == next) {
+                    onPath = true;
+                    break;
+                }
+            }
+            if (onPath) {
+                continue;
+            }
+            int found = searchPath(next, target, edgeTimeValue, maxTime, depth + 1);
+            if (found > 0) {
+                return found;
+            }
+        }
+        return 0;
+    }
+
+    // 窗口内转入方数（或转出对象数）恰好达到阈值且本笔来自新的对手方时告警，避免重复告警
+    private void detectFan(int from, int to, int slot, int time) {
+        int minTime = windowStart(time);
+
+        int senders = countDistinct(to, slot, minTime, false, from);
+        if (senders == fanThreshold) {
+            fanIns.incrementAndGet();
+            alertSink.accept(new Alert("MEDIUM", "多账户集中转入：账户" + accountNumbers[to]
+                    + "在窗口内收到" + senders + "个账户转账，合计" + BigDecimal.valueOf(windowCents, 2)));
+        }
+        int receivers = countDistinct(from, slot, minTime, true, to);
+        if (receivers == fanThreshold) {
+            fanOuts.incrementAndGet();
+            alertSink.accept(new Alert("MEDIUM", "多账户分散转出：账户" + accountNumbers[from]
+                    + "在窗口内向" + receivers + "个账户转账，合计" + BigDecimal.valueOf(windowCents, 2)));
+        }
+    }
+
+    // 统计不同对手方数量，同时把途经边的金额累计到windowCents；
+    // 若新边的对手方在更早的边中已出现，返回-1表示不是新的对手方
+    private int countDistinct(int node, int newestSlot, int minTime, boolean outgoing, int counterparty) {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visitStamp, 0);
+            stamp = 1;
+        }
+        int distinct = 0;
+        windowCents = 0;
+        int previous = NONE;
+        int e = outgoing ? headOut[node] : headIn[node];
+        while (e != NONE && isLinkValid(e, previous, node, outgoing, minTime)) {
+            int other = outgoing ? edgeTo[e] : edgeFrom[e];
+            if (e != newestSlot && other == counterparty) {
+                return -1;
+            }
+            windowCents += edgeCents[e];
+            if (visitStamp[other] != stamp) {
+                visitStamp[other] = stamp;
+                distinct++;
+                if (distinct > fanThreshold) {
+                    return distinct;
+                }
+            }
+            previous = e;
+            e = outgoing ? nextOut[e] : nextIn[e];
+        }
+        return distinct;
+    }
+
+    // 链表由新到旧；边被环形数组覆盖（序号不再比上一条小或端点不符）或超出时间窗口即视为链表结束
+    private boolean isLinkValid(int e, int previous, int node, boolean outgoing, int minTime) {
+        if (edgeSeq[e] < 0 || (outgoing ? edgeFrom[e] : edgeTo[e]) != node || edgeTime[e] < minTime) {
+            return false;
+        }
+        return previous == NONE || edgeSeq[e] < edgeSeq[previous];
+    }
+
+    private boolean validOut(int e, int node, int time) {
+        return e != NONE && isLinkValid(e, NONE, node, true, windowStart(time));
+    }
+
+    private boolean validIn(int e, int node, int time) {
+        return e != NONE && isLinkValid(e, NONE, node, false, windowStart(time));
+    }
+
+    private int accountId(String accountNumber, int time) {
+        Integer id = accountIndex.get(accountNumber);
+        if (id != null) {
+            return id;
+        }
+        if (freeAccounts.isEmpty() && usedAccounts == maxAccounts) {
+            compact(time);
+        }
+        int newId;
+        if (!freeAccounts.isEmpty()) {
+            newId = freeAccounts.poll();
+        } else if (usedAccounts < maxAccounts) {
+            newId = usedAccounts++;
+        } else {
+            return NONE;
+        }
+        accountIndex.put(accountNumber, newId);
+        liveAccounts = accountIndex.size();
+        accountNumbers[newId] = accountNumber;
+        headOut[newId] = NONE;
+        headIn[newId] = NONE;
+        return newId;
+    }
+
+    // 回收窗口内已没有任何转入转出边的账户编号
+    private void compact(int time) {
+        int minTime = windowStart(time);
+        for (int id = 0; id < usedAccounts; id++) {
+            String accountNumber = accountNumbers[id];
+            if (accountNumber == null) {
+                continue;
+            }
+            boolean active = headOut[id] != NONE && isLinkValid(headOut[id], NONE, id, true, minTime)
+                    || headIn[id] != NONE && isLinkValid(headIn[id], NONE, id, false, minTime);
+            if (!active) {
+                accountIndex.remove(accountNumber);
+                accountNumbers[id] = null;
+                headOut[id] = NONE;
+                headIn[id] = NONE;
+                freeAccounts.add(id);
+            }
+        }
+        liveAccounts = accountIndex.size();
+        compactions.incrementAndGet();
+    }
+
+    private int windowStart(int time) {
+        return time - windowMinutes * 60;
+    }
+
+    private int currentTime() {
+        return (int) (System.currentTimeMillis() / 1000 - epochSeconds);
+    }
+}
@@ -0,0 +1,269 @@
+package com.digitalbank.risk;
+
+import com.digitalbank.entity.Account;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// 转账评分：按当前模型对每笔转账打分并给出风险等级。特征写入线程复用的double数组，
+// 收款方是否新出现由定长的付款方/收款方指纹表判断，评分过程不分配对象。
+// 模型文件变化时重新解析并整体替换，解析失败保留旧模型
+@Slf4j
+@Component
+public class TransferScorer {
+    private static final String DEFAULT_MODEL = "transfer-model.conf";
+    private static final int PROBES = 4;
+    private static final int SCORE_BUCKETS = 10;
+    // 开户日期表每个槽的低24位存开户日（epoch day），高位存账号指纹
+    private static final long DAY_MASK = 0xFFFFFFL;
+
+    @Value("${digitalbank.risk.model.enabled:true}")
+    private boolean enabled;
+
+    @Value("${digitalbank.risk.model.file:}")
+    private String file;
+
+    // 指纹表槽数，向上取2的幂；表满后覆盖旧指纹，很久未出现的收款方会重新视为新收款方
+    @Value("${digitalbank.risk.model.counterparty-slots:1048576}")
+    private int counterpartySlots;
+
+    @Value("${digitalbank.risk.model.max-cached-accounts:100000}")
+    private int maxCachedAccounts;
+
+    private ReloadableFile source;
+    private volatile ScoringModel model;
+    private AtomicLongArray counterparties;
+    private int mask;
+
+    // 开户日期不会变化，缓存后评分时不再查询账户；与指纹表一样是定长开放寻址表，满后覆盖旧槽
+    private AtomicLongArray openedDays;
+    private int openedMask;
+    private final AtomicInteger cachedAccounts = new AtomicInteger();
+    // 当天的epoch day及其结束时刻，跨天时重新计算一次，评分时只读系统毫秒时钟
+    private volatile Today today = new Today(0, Long.MIN_VALUE);
+    private final ThreadLocal<double[]> features = ThreadLocal.withInitial(() -> new double[ScoringModel.FEATURES.length]);
+
+    private final LongAdder scored = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LongAdder[] scoreHistogram = new LongAdder[SCORE_BUCKETS];
+    private final Map<String, LongAdder> flagged = new ConcurrentHashMap<>();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong reloadErrors = new AtomicLong();
+    private volatile String lastError;
+
+    @PostConstruct
+    public void init() throws IOException {
+        int slots = Integer.highestOneBit(Math.max(PROBES, counterpartySlots - 1)) << 1;
+        counterparties = new AtomicLongArray(slots);
+        mask = slots - 1;
+        int openedSlots = Integer.highestOneBit(Math.max(PROBES, maxCachedAccounts * 2 - 1)) << 1;
+        openedDays = new AtomicLongArray(openedSlots);
+        openedMask = openedSlots - 1;
+        for (int i = 0; i < SCORE_BUCKETS; i++) {
+            scoreHistogram[i] = new LongAdder();
+        }
+        source = new ReloadableFile(file);
+        if (source.isConfigured()) {
+            reload();
+        }
+        if (!source.isConfigured() || model == null) {
+            // 未配置模型文件，或启动时模型文件不可用，使用内置模型
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new ClassPathResource(DEFAULT_MODEL).getInputStream(), StandardCharsets.UTF_8))) {
+                model = ScoringModel.parse(reader.lines().toList(), "classpath:" + DEFAULT_MODEL);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${digitalbank.risk.model.reload-interval-ms:10000}")
+    public void reload() {
+        if (!source.hasChanged()) {
+            return;
+        }
+        try {
+            model = ScoringModel.parse(Files.readAllLines(source.getPath(), StandardCharsets.UTF_8),
+                    source.getPath().toString());
+            source.markLoaded();
+            reloads.incrementAndGet();
+            lastError = null;
+            log.info("转账评分模型已加载：{}", source.getPath());
+        } catch (IOException | IllegalArgumentException e) {
+            // 标记为已处理，文件再次修改后才重新解析
+            source.markLoaded();
+            reloadErrors.incrementAndGet();
+            lastError = e.getMessage();
+            log.warn("转账评分模型加载失败，继续使用原模型：{}", e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 评分写入context，返回风险等级，未达到最低阈值时返回null。需在频率统计之后调用
+    public String evaluate(RiskContext context) {
+        long start = System.nanoTime();
+        ScoringModel current = model;
+        double[] x = features.get();
+        long[] velocity = context.getVelocity();
+
+        x[ScoringModel.AMOUNT] = Math.log1p(context.getAmount());
+        x[ScoringModel.NEW_COUNTERPARTY] = rememberCounterparty(context.getAccountNumber(),
+                context.getTargetAccountNumber()) ? 0 : 1;
+        x[ScoringModel.MINUTE_COUNT] = Math.log1p(velocity[0]);
+        x[ScoringModel.HOUR_COUNT] = Math.log1p(velocity[1]);
+        x[ScoringModel.DAY_COUNT] = Math.log1p(velocity[2]);
+        x[ScoringModel.DAY_AMOUNT] = Math.log1p(velocity[VelocityTracker.WINDOWS + 2] / 100.0);
+        x[ScoringModel.ACCOUNT_AGE_DAYS] = current.uses(ScoringModel.ACCOUNT_AGE_DAYS)
+                ? Math.log1p(accountAgeDays(context)) : 0;
+        x[ScoringModel.NIGHT] = context.getHour() < 6 ? 1 : 0;
+
+        double score = current.score(x);
+        context.setScore(score);
+        String level = current.levelFor(score);
+
+        long nanos = System.nanoTime() - start;
+        scored.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        scoreHistogram[Math.min(SCORE_BUCKETS - 1, (int) (score * SCORE_BUCKETS))].increment();
+        if (level != null) {
+            flagged.computeIfAbsent(level, key -> new LongAdder()).increment();
+        }
+        return level;
+    }
+
+    // 返回该付款方此前是否向该收款方转过账，并记下本次
+    private boolean rememberCounterparty(String from, String to) {
+        long fingerprint = fingerprint(from, to);
+        int index = (int) fingerprint & mask;
+        for (int i = 0; i < PROBES; i++) {
+            long slot = counterparties.get((index + i) & mask);
+            if (slot == fingerprint) {
+                return true;
+            }
+            if (slot == 0 && counterparties.compareAndSet((index + i) & mask, 0, fingerprint)) {
+                return false;
+            }
+        }
+        // 探测范围内都被占用，按指纹高位选一个覆盖
+        counterparties.set((index + (int) (fingerprint >>> 62)) & mask, fingerprint);
+        return false;
+    }
+
+    private static long fingerprint(String from, String to) {
+        long h = ((long) String.valueOf(from).hashCode() << 32) ^ (String.valueOf(to).hashCode() & 0xffffffffL);
+        h ^= (long) String.valueOf(to).length() << 56;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        // 0表示空槽
+        return h == 0 ? 1 : h;
+    }
+
+    private long accountAgeDays(RiskContext context) {
+        String accountNumber = context.getAccountNumber();
+        if (accountNumber == null) {
+            return 0;
+        }
+        long tag = accountTag(accountNumber);
+        int index = (int) (tag >>> 24) & openedMask;
+        long opened = -1;
+        for (int i = 0; i < PROBES; i++) {
+            long slot = openedDays.get((index + i) & openedMask);
+            if ((slot & ~DAY_MASK) == tag) {
+                opened = slot & DAY_MASK;
+                break;
+            }
+        }
+        if (opened < 0) {
+            Account account = context.getAccount();
+            if (account == null || account.getCreateTime() == null) {
+                return 0;
+            }
+            opened = account.getCreateTime().toLocalDate().toEpochDay();
+            rememberOpened(index, tag | (opened & DAY_MASK));
+        }
+        return Math.max(0, currentEpochDay() - opened);
+    }
+
+    private void rememberOpened(int index, long entry) {
+        for (int i = 0; i < PROBES; i++) {
+            if (openedDays.compareAndSet((index + i) & openedMask, 0, entry)) {
+                cachedAccounts.incrementAndGet();
+                return;
+            }
+        }
+        openedDays.set((index + (int) (entry >>> 62)) & openedMask, entry);
+    }
+
+    // 账号的64位FNV-1a指纹，清掉低24位留给开户日，最高位置1保证非0（0表示空槽）
+    private static long accountTag(String accountNumber) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < accountNumber.length(); i++) {
+            h ^= accountNumber.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return (h | Long.MIN_VALUE) & ~DAY_MASK;
+    }
+
+    private long currentEpochDay() {
+        long now = System.currentTimeMillis();
+        Today current = today;
+        if (now >= current.endMillis() || now < current.endMillis() - 2 * 86_400_000L) {
+            // 跨天（或时钟回拨）时按系统时区重新计算，一天一次
+            ZoneId zone = ZoneId.systemDefault();
+            LocalDate date = LocalDate.now(zone);
+            current = new Today(date.toEpochDay(), date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+            today = current;
+        }
+        return current.epochDay();
+    }
+
+    private record Today(long epochDay, long endMillis) {
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long count = scored.sum();
+        stats.put("enabled", enabled);
+        stats.put("model", model.describe());
+        stats.put("scored", count);
+        stats.put("avgNanos", count == 0 ? 0 : totalNanos.sum() / count);
+        stats.put("maxNanos", maxNanos.get());
+        long[] histogram = new long[SCORE_BUCKETS];
+        for (int i = 0; i < SCORE_BUCKETS; i++) {
+            histogram[i] = scoreHistogram[i].sum();
+        }
+        stats.put("scoreHistogram", histogram);
+        Map<String, Long> flaggedCounts = new HashMap<>();
+        flagged.forEach((level, adder) -> flaggedCounts.put(level, adder.sum()));
+        stats.put("flagged", flaggedCounts);
+        stats.put("counterpartySlots", counterparties.length());
+        stats.put("cachedAccounts", cachedAccounts.get());
+        stats.put("reloads", reloads.get());
+        stats.put("reloadErrors", reloadErrors.get());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+package com.digitalbank.risk;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 按账户统计最近1分钟、1小时、24小时的交易笔数和金额。每个窗口是固定长度的环形时间桶，
+// 窗口合计随桶过期增量扣减，记录时不再逐桶求和；长时间无交易的账户定期清理。
+// 桶粒度为10秒、5分钟、2小时，共30个桶，每个账户约0.6KB（含映射表开销），窗口边界按桶粒度近似
+@Component
+public class VelocityTracker {
+    public static final String[] WINDOW_NAMES = {"1分钟", "1小时", "24小时"};
+
+    // 窗口i超过笔数阈值时置位 1 << i，超过金额阈值时置位 1 << (i + 3)
+    public static final int WINDOWS = 3;
+
+    private static final long[] BUCKET_MILLIS = {10_000L, 300_000L, 7_200_000L};
+    private static final int[] BUCKET_COUNTS = {6, 12, 12};
+    private static final int TOTAL_BUCKETS = 6 + 12 + 12;
+    private static final long IDLE_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private final ConcurrentHashMap<String, AccountVelocity> accounts = new ConcurrentHashMap<>();
+    private final AtomicLong untracked = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    @Value("${digitalbank.risk.velocity.max-accounts:50000}")
+    private int maxAccounts;
+
+    private final long[] countLimits = new long[WINDOWS];
+    private final long[] centLimits = new long[WINDOWS];
+
+    public VelocityTracker(@Value("${digitalbank.risk.velocity.minute-count:10}") long minuteCount,
+                           @Value("${digitalbank.risk.velocity.minute-amount:50000}") BigDecimal minuteAmount,
+                           @Value("${digitalbank.risk.velocity.hour-count:60}") long hourCount,
+                           @Value("${digitalbank.risk.velocity.hour-amount:200000}") BigDecimal hourAmount,
+                           @Value("${digitalbank.risk.velocity.day-count:200}") long dayCount,
+                           @Value("${digitalbank.risk.velocity.day-amount:500000}") BigDecimal dayAmount) {
+        countLimits[0] = minuteCount;
+        countLimits[1] = hourCount;
+        countLimits[2] = dayCount;
+        centLimits[0] = toCents(minuteAmount);
+        centLimits[1] = toCents(hourAmount);
+        centLimits[2] = toCents(dayAmount);
+    }
+
+    // 记录一笔交易，返回本笔交易使哪些窗口首次越过阈值；只在越过的那一笔上报告，避免持续告警。
+    // windows不为null时依次写入三个窗口含本笔的笔数和金额（分），供风控规则使用
+    public int record(String accountNumber, BigDecimal amount, long[] windows) {
+        if (accountNumber == null || amount == null) {
+            return 0;
+        }
+        AccountVelocity velocity = accounts.get(accountNumber);
+        if (velocity == null) {
+            if (accounts.size() >= maxAccounts) {
+                // 达到上限时新账户暂不统计，等待空闲账户被清理后再纳入
+                untracked.incrementAndGet();
+                return 0;
+            }
+            velocity = accounts.computeIfAbsent(accountNumber, key -> new AccountVelocity());
+        }
+        return velocity.record(toCents(amount), System.currentTimeMillis(), countLimits, centLimits, windows);
+    }
+
+    @Scheduled(fixedDelayString = "${digitalbank.risk.velocity.evict-interval-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - IDLE_MILLIS;
+        accounts.entrySet().removeIf(entry -> {
+            boolean idle = entry.getValue().lastSeen < cutoff;
+            if (idle) {
+                evicted.incrementAndGet();
+            }
+            return idle;
+        });
+    }
+
+    public int getTrackedAccounts() {
+        return accounts.size();
+    }
+
+    public long getUntracked() {
+        return untracked.get();
+    }
+
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.UP).unscaledValue().longValueExact();
+    }
+
+    private static class AccountVelocity {
+        // 三个窗口的桶依次排在同一组数组里，窗口i从offset(i)开始
+        private final int[] counts = new int[TOTAL_BUCKETS];
+        private final long[] cents = new long[TOTAL_BUCKETS];
+        // 各窗口当前桶的序号，以及窗口内所有桶的笔数、金额合计
+        private final long[] epochs = new long[WINDOWS];
+        private final long[] windowCounts = new long[WINDOWS];
+        private final long[] windowCents = new long[WINDOWS];
+        private volatile long lastSeen;
+
+        synchronized int record(long amountCents, long now, long[] countLimits, long[] centLimits, long[] windows) {
+            lastSeen = now;
+            int crossed = 0;
+            int offset = 0;
+            for (int w = 0; w < WINDOWS; w++) {
+                int size = BUCKET_COUNTS[w];
+                // 时钟回拨时继续记在当前桶
+                long epoch = Math.max(now / BUCKET_MILLIS[w], epochs[w]);
+                advance(w, offset, size, epoch);
+
+                long count = windowCounts[w];
+                long total = windowCents[w];
+                int slot = offset + (int) (epoch % size);
+                counts[slot]++;
+                cents[slot] += amountCents;
+                windowCounts[w] = count + 1;
+                windowCents[w] = total + amountCents;
+                if (windows != null) {
+                    windows[w] = count + 1;
+                    windows[w + WINDOWS] = total + amountCents;
+                }
+
+                if (count <= countLimits[w] && count + 1 > countLimits[w]) {
+                    crossed |= 1 << w;
+                }
+                if (total <= centLimits[w] && total + amountCents > centLimits[w]) {
+                    crossed |= 1 << (w + WINDOWS);
+                }
+                offset += size;
+            }
+            return crossed;
+        }
+
+        // 把窗口推进到epoch，滑出窗口的桶清零并从合计中扣除；间隔超过整个窗口时直接清空
+        private void advance(int w, int offset, int size, long epoch) {
+            long last = epochs[w];
+            if (epoch == last) {
+                return;
+            }
+            if (epoch - last >= size) {
+                for (int i = offset; i < offset + size; i++) {
+                    counts[i] = 0;
+                    cents[i] = 0;
+                }
+                windowCounts[w] = 0;
+                windowCents[w] = 0;
+            } else {
+                for (long e = last + 1; e <= epoch; e++) {
+                    int slot = offset + (int) (e % size);
+                    windowCounts[w] -= counts[slot];
+                    windowCents[w] -= cents[slot];
+                    counts[slot] = 0;
+                    cents[slot] = 0;
+                }
+            }
+            epochs[w] = epoch;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.digitalbank.risk;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 可疑账户名单：布隆过滤器先排除绝大多数正常账户，命中后再用精确集合确认。
+// 名单文件每行一个账号，#开头为注释；文件变化时在后台构建新快照后整体替换，查询不加锁
+@Slf4j
+@Component
+public class WatchList {
+    // 未配置名单文件时使用的内置名单
+    private static final List<String> DEFAULT_ENTRIES = List.of("可疑账户1", "可疑账户2");
+
+    @Value("${digitalbank.risk.watchlist.file:}")
+    private String file;
+
+    @Value("${digitalbank.risk.watchlist.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    private ReloadableFile source;
+    private volatile Snapshot snapshot;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong bloomRejected = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong reloadErrors = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        source = new ReloadableFile(file);
+        snapshot = build(DEFAULT_ENTRIES, 0, "default");
+        reload();
+    }
+
+    public boolean contains(String accountNumber) {
+        if (accountNumber == null) {
+            return false;
+        }
+        Snapshot current = snapshot;
+        lookups.incrementAndGet();
+        if (!current.bloom.mightContain(accountNumber)) {
+            bloomRejected.incrementAndGet();
+            return false;
+        }
+        if (current.entries.contains(accountNumber)) {
+            hits.incrementAndGet();
+            return true;
+        }
+        falsePositives.incrementAndGet();
+        return false;
+    }
+
+    @Scheduled(fixedDelayString = "${digitalbank.risk.watchlist.reload-interval-ms:10000}")
+    public void reload() {
+        if (!source.hasChanged()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<String> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(source.getPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    entries.add(line);
+                }
+            }
+        } catch (IOException e) {
+            // 读取失败时继续使用旧名单，下个周期重试
+            reloadErrors.incrementAndGet();
+            log.warn("可疑账户名单加载失败：{}", e.getMessage());
+            return;
+        }
+        source.markLoaded();
+        snapshot = build(entries, System.nanoTime() - start, source.getPath().toString());
+        reloads.incrementAndGet();
+        log.info("可疑账户名单已加载，条数：{}，耗时：{}ms", snapshot.entries.size(), snapshot.loadNanos / 1_000_000);
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        long negatives = bloomRejected.get() + falsePositives.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("source", current.source);
+        stats.put("entries", current.entries.size());
+        stats.put("loadMillis", current.loadNanos / 1_000_000.0);
+        stats.put("loadedAt", current.loadedAt);
+        stats.put("bloomBits", current.bloom.getBitCount());
+        stats.put("bloomHashes", current.bloom.getHashCount());
+        stats.put("bloomBytes", current.bloom.getMemoryBytes());
+        stats.put("setBytesEstimate", current.setBytesEstimate);
+        stats.put("expectedFalsePositiveRate", current.bloom.expectedFalsePositiveRate(current.entries.size()));
+        stats.put("observedFalsePositiveRate", negatives == 0 ? 0.0 : (double) falsePositives.get() / negatives);
+        stats.put("lookups", lookups.get());
+        stats.put("hits", hits.get());
+        stats.put("bloomRejected", bloomRejected.get());
+        stats.put("falsePositives", falsePositives.get());
+        stats.put("reloads", reloads.get());
+        stats.put("reloadErrors", reloadErrors.get());
+        return stats;
+    }
+
+    private Snapshot build(List<String> entries, long readNanos, String sourceName) {
+        long start = System.nanoTime();
+        BloomFilter bloom = new BloomFilter(entries.size(), falsePositiveRate);
+        Set<String> set = new HashSet<>(entries.size() * 4 / 3 + 1);
+        long chars = 0;
+        for (String entry : entries) {
+            bloom.add(entry);
+            if (set.add(entry)) {
+                chars += entry.length();
+            }
+        }
+        // 粗略估算：每条约HashMap节点32字节、String对象24字节、字符数组16字节头，加上桶数组
+        long setBytes = set.size() * (32L + 24L + 16L) + chars * 2 + Integer.highestOneBit(set.size() * 2 + 1) * 4L;
+        return new Snapshot(bloom, set, readNanos + System.nanoTime() - start, setBytes, sourceName);
+    }
+
+    private static class Snapshot {
+        final BloomFilter bloom;
+        final Set<String> entries;
+        final long loadNanos;
+        final long setBytesEstimate;
+        final String source;
+        final long loadedAt = System.currentTimeMillis();
+
+        Snapshot(BloomFilter bloom, Set<String> entries, long loadNanos, long setBytesEstimate, String source) {
+            this.bloom = bloom;
+            this.entries = entries;
+            this.loadNanos = loadNanos;
+            this.setBytesEstimate = setBytesEstimate;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.digitalbank.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// 进程内分段锁表：转账前按分段下标的固定顺序锁住双方账户，
+// 同一对账户的相向转账在JVM内排队，不再占着数据库连接等行锁
+@Component
+public class AccountLockTable {
+    private final ReentrantLock[] stripes;
+
+    public AccountLockTable(@Value("${digitalbank.transfer.lock-stripes:1024}") int stripeCount) {
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLocks(String accountNumber, String otherAccountNumber, Supplier<T> action) {
+        int a = stripeOf(accountNumber);
+        int b = stripeOf(otherAccountNumber);
+        ReentrantLock first = stripes[Math.min(a, b)];
+        ReentrantLock second = stripes[Math.max(a, b)];
+
+        first.lock();
+        try {
+            if (second != first) {
+                second.lock();
+            }
+            try {
+                return action.get();
+            } finally {
+                if (second != first) {
+                    second.unlock();
+                }
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+
+    private int stripeOf(String accountNumber) {
+        return Math.floorMod(accountNumber.hashCode(), stripes.length);
+    }
+}
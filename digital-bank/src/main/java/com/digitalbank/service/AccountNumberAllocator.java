@@ -0,0 +1,93 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.NumberSequence;
+import com.digitalbank.repository.NumberSequenceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// 账号分配器：从序号表一次预留一段序号在内存中发放，开户无需再查询账号是否已存在。
+// 账号格式为 622202 + 12位序号 + 1位Luhn校验位
+@Component
+public class AccountNumberAllocator {
+    private static final String BIN = "622202";
+    private static final String SEQUENCE_NAME = "account_number";
+    private static final long MAX_SEQUENCE = 999_999_999_999L;
+
+    @Autowired
+    private NumberSequenceRepository numberSequenceRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${digitalbank.account-number.block-size:1000}")
+    private int blockSize;
+
+    private long next;
+    private long limit;
+
+    public synchronized String nextAccountNumber() {
+        if (next >= limit) {
+            reserveBlock();
+        }
+        return format(next++);
+    }
+
+    static String format(long sequence) {
+        String body = BIN + String.format("%012d", sequence);
+        return body + luhnCheckDigit(body);
+    }
+
+    static int luhnCheckDigit(String body) {
+        // 从右向左，校验位之前的第一位开始每隔一位乘2
+        int sum = 0;
+        boolean doubleIt = true;
+        for (int i = body.length() - 1; i >= 0; i--) {
+            int digit = body.charAt(i) - '0';
+            if (doubleIt) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubleIt = !doubleIt;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private void reserveBlock() {
+        // 在独立事务中预留号段，锁只持有到本次预留提交，不随开户事务回滚
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Long start;
+        try {
+            start = template.execute(status -> reserve());
+        } catch (DataIntegrityViolationException e) {
+            // 并发首次初始化序号行时只有一方插入成功，另一方重试即可
+            start = template.execute(status -> reserve());
+        }
+        if (start + blockSize - 1 > MAX_SEQUENCE) {
+            throw new RuntimeException("账号序号已耗尽");
+        }
+        next = start;
+        limit = start + blockSize;
+    }
+
+    private Long reserve() {
+        NumberSequence sequence = numberSequenceRepository.findForUpdate(SEQUENCE_NAME).orElse(null);
+        if (sequence == null) {
+            sequence = new NumberSequence();
+            sequence.setName(SEQUENCE_NAME);
+            sequence.setNextValue(1L);
+        }
+        long start = sequence.getNextValue();
+        sequence.setNextValue(start + blockSize);
+        numberSequenceRepository.saveAndFlush(sequence);
+        return start;
+    }
+}
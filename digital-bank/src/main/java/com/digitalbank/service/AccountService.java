@@ -2,12 +2,14 @@ package com.digitalbank.service;
 
 import com.digitalbank.entity.Account;
 import com.digitalbank.entity.User;
+import com.digitalbank.ledger.LedgerEngine;
 import com.digitalbank.repository.AccountRepository;
 import com.digitalbank.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Service
@@ -18,14 +20,22 @@ public class AccountService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private LedgerEngine ledgerEngine;
+
+    @Autowired
+    private HotAccountService hotAccountService;
+
+    @Autowired
+    private AccountNumberAllocator accountNumberAllocator;
+
     public Account createAccount(Account account, String userId) {
         // 查找用户
         User user = userRepository.findByUserId(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        // 生成账户号
-        String accountNumber = "622202" + String.format("%013d", System.currentTimeMillis() % 10000000000000L);
-        account.setAccountNumber(accountNumber);
+        // 从预留号段分配账户号
+        account.setAccountNumber(accountNumberAllocator.nextAccountNumber());
         account.setUser(user);
 
         return accountRepository.save(account);
@@ -36,47 +46,86 @@ public class AccountService {
     }
 
     @Transactional
-    public Account deposit(String accountNumber, BigDecimal amount) {
+    public void deposit(String accountNumber, BigDecimal amount) {
+        applyDeposit(accountNumber, amount);
+    }
+
+    @Transactional
+    public void withdraw(String accountNumber, BigDecimal amount) {
+        applyWithdraw(accountNumber, amount);
+    }
+
+    @Transactional
+    public void transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        applyTransfer(fromAccountNumber, toAccountNumber, amount);
+    }
+
+    // 以下apply方法不单独声明事务，业务失败抛出的异常不会把调用方事务标记为回滚，
+    // 批量记账可以在同一事务内逐笔处理并记录失败项
+    public void applyDeposit(String accountNumber, BigDecimal amount) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new RuntimeException("存款金额必须大于0");
         }
 
-        Account account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new RuntimeException("账户不存在"));
-
-        // 更新余额
-        account.setBalance(account.getBalance().add(amount));
-        account.setAvailableBalance(account.getAvailableBalance().add(amount));
-        account.setUpdateTime(java.time.LocalDateTime.now());
+        // 热点账户入账落到分槽，不争抢主余额行
+        if (hotAccountService.creditSlot(accountNumber, amount)) {
+            return;
+        }
 
-        return accountRepository.save(account);
+        // 条件更新一次完成入账，不再先查询再整行保存
+        if (accountRepository.credit(accountNumber, amount, LocalDateTime.now()) == 0) {
+            throw new RuntimeException("账户不存在");
+        }
+        hotAccountService.recordCredit(accountNumber);
     }
 
-    @Transactional
-    public Account withdraw(String accountNumber, BigDecimal amount) {
+    public void applyWithdraw(String accountNumber, BigDecimal amount) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new RuntimeException("取款金额必须大于0");
         }
 
-        Account account = accountRepository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new RuntimeException("账户不存在"));
-
-        // 检查余额
-        if (account.getAvailableBalance().compareTo(amount) < 0) {
+        // 余额检查与扣款在同一条语句中完成，未更新时再区分失败原因
+        if (accountRepository.debit(accountNumber, amount, LocalDateTime.now()) == 0) {
+            // 热点账户的部分余额可能还在分槽中，归集后再扣一次
+            if (hotAccountService.isSplit(accountNumber)
+                    && hotAccountService.consolidate(accountNumber).signum() > 0
+                    && accountRepository.debit(accountNumber, amount, LocalDateTime.now()) > 0) {
+                return;
+            }
+            if (!accountRepository.existsByAccountNumber(accountNumber)) {
+                throw new RuntimeException("账户不存在");
+            }
             throw new RuntimeException("余额不足");
         }
+    }
+
+    // 需在事务内调用，行锁持有到事务结束
+    public void applyTransfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new RuntimeException("转账金额必须大于0");
+        }
 
-        // 更新余额
-        account.setBalance(account.getBalance().subtract(amount));
-        account.setAvailableBalance(account.getAvailableBalance().subtract(amount));
-        account.setUpdateTime(java.time.LocalDateTime.now());
+        // 按账号固定顺序加行锁，相向转账不会互相持有对方需要的锁
+        boolean fromFirst = fromAccountNumber.compareTo(toAccountNumber) <= 0;
+        lockAccount(fromFirst ? fromAccountNumber : toAccountNumber);
+        lockAccount(fromFirst ? toAccountNumber : fromAccountNumber);
 
-        return accountRepository.save(account);
+        applyWithdraw(fromAccountNumber, amount);
+        applyDeposit(toAccountNumber, amount);
+    }
+
+    private void lockAccount(String accountNumber) {
+        accountRepository.lockByAccountNumber(accountNumber)
+                .orElseThrow(() -> new RuntimeException("账户不存在"));
     }
 
     public BigDecimal getBalance(String accountNumber) {
+        // 账务引擎开启时数据库余额有滞后，以内存账本为准
+        if (ledgerEngine.isEnabled()) {
+            return ledgerEngine.getBalance(accountNumber);
+        }
         Account account = accountRepository.findByAccountNumber(accountNumber)
                 .orElseThrow(() -> new RuntimeException("账户不存在"));
-        return account.getBalance();
+        return account.getBalance().add(hotAccountService.pendingSlotBalance(accountNumber));
     }
 }
\ No newline at end of file
@@ -0,0 +1,275 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.BalanceSnapshot;
+import com.digitalbank.repository.AccountRepository;
+import com.digitalbank.repository.BalanceSnapshotRepository;
+import com.digitalbank.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 余额检查点：每天为每个账户写入日终余额 = 前一天的检查点 + 当天成功交易的转入 - 转出，
+// 账户按主键分块并行处理，每块一个事务。查询某一时刻的余额只需读最近的检查点和其后的交易。
+// 账户开户余额为0，余额只随交易变化；没有前一天检查点的账户（首次生成、新开户、前一天该块失败）按全部历史计算
+@Slf4j
+@Component
+public class BalanceSnapshotService {
+    private static final LocalDateTime HISTORY_START = LocalDate.EPOCH.atStartOfDay();
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${digitalbank.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${digitalbank.snapshot.threads:4}")
+    private int threads;
+
+    @Value("${digitalbank.snapshot.chunk-size:1000}")
+    private int chunkSize;
+
+    private ExecutorService executor;
+    private TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Map<String, Object> lastRun;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "balance-snapshot-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public BigDecimal balanceAsOf(String accountNumber, LocalDateTime instant) {
+        Long accountId = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new RuntimeException("账户不存在")).getId();
+        return balanceAsOf(accountId, instant);
+    }
+
+    // 检查点日期D表示D+1零点的余额，只取instant当天之前的检查点
+    public BigDecimal balanceAsOf(Long accountId, LocalDateTime instant) {
+        BigDecimal balance = BigDecimal.ZERO;
+        LocalDateTime from = HISTORY_START;
+        BalanceSnapshot snapshot = balanceSnapshotRepository
+                .findFirstByAccountIdAndSnapshotDateLessThanOrderBySnapshotDateDesc(accountId, instant.toLocalDate())
+                .orElse(null);
+        if (snapshot != null) {
+            balance = snapshot.getBalance();
+            from = snapshot.getSnapshotDate().plusDays(1).atStartOfDay();
+        }
+        return balance.add(transactionRepository.sumIncoming(accountId, from, instant))
+                .subtract(transactionRepository.sumOutgoing(accountId, from, instant));
+    }
+
+    // 每天补齐到昨天的检查点：第一个检查点之后缺失的日期（某天任务未执行或失败）和最近一次之后的日期，逐天依次生成。
+    // 缺口之后的检查点在生成时找不到前一天的检查点，已按全部历史计算，补齐缺口不需要重建它们
+    @Scheduled(cron = "${digitalbank.snapshot.cron:0 30 0 * * *}")
+    public void catchUp() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        List<LocalDate> existing = balanceSnapshotRepository.findSnapshotDates();
+        if (existing.isEmpty()) {
+            run(yesterday, yesterday);
+            return;
+        }
+        Set<LocalDate> done = new HashSet<>(existing);
+        for (LocalDate date = existing.get(0); !date.isAfter(yesterday); date = date.plusDays(1)) {
+            if (!done.contains(date)) {
+                run(date, date);
+            }
+        }
+    }
+
+    // 生成指定日期的检查点，重复生成时覆盖该日已有的检查点；之后的检查点都是在该日基础上逐天累加的，
+    // 已存在时从下一天起依次重建到最近的检查点日期，不留下基于旧值的检查点
+    public Map<String, Object> createSnapshots(LocalDate date) {
+        if (!date.isBefore(LocalDate.now())) {
+            throw new RuntimeException("只能为已结束的日期生成余额检查点");
+        }
+        LocalDate latest = balanceSnapshotRepository.findLatestSnapshotDate();
+        return run(date, latest != null && latest.isAfter(date) ? latest : date);
+    }
+
+    // 从from起逐天生成到through；某天有失败的块时停止，之后的日期不再基于不完整的检查点生成
+    private Map<String, Object> run(LocalDate from, LocalDate through) {
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("余额检查点任务正在执行");
+        }
+        long start = System.currentTimeMillis();
+        try {
+            int days = 0;
+            int accounts = 0;
+            int chunks = 0;
+            int failedChunks = 0;
+            LocalDate completed = null;
+            for (LocalDate date = from; !date.isAfter(through); date = date.plusDays(1)) {
+                DayResult day = snapshotDay(date);
+                days++;
+                accounts += day.accounts();
+                chunks += day.chunks();
+                failedChunks += day.failedChunks();
+                if (day.failedChunks() > 0) {
+                    log.error("{}余额检查点有{}块生成失败，停止生成之后的日期，需重新生成", date, day.failedChunks());
+                    break;
+                }
+                completed = date;
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("date", from.toString());
+            result.put("through", through.toString());
+            result.put("completedThrough", completed == null ? null : completed.toString());
+            result.put("days", days);
+            result.put("accounts", accounts);
+            result.put("chunks", chunks);
+            result.put("failedChunks", failedChunks);
+            result.put("millis", System.currentTimeMillis() - start);
+            lastRun = result;
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("余额检查点任务被中断");
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private DayResult snapshotDay(LocalDate date) throws InterruptedException {
+        LocalDateTime dayStart = date.atStartOfDay();
+        LocalDateTime dayEnd = date.plusDays(1).atStartOfDay();
+        // 最多同时排队两轮的块，账户主键不会一次性全部载入内存
+        Semaphore inFlight = new Semaphore(threads * 2);
+        List<Future<Integer>> chunks = new ArrayList<>();
+        Long afterId = Long.MIN_VALUE;
+        while (true) {
+            List<Long> accountIds = accountRepository.findIdsAfter(afterId, dayEnd, PageRequest.of(0, chunkSize));
+            if (accountIds.isEmpty()) {
+                break;
+            }
+            afterId = accountIds.get(accountIds.size() - 1);
+            inFlight.acquire();
+            chunks.add(executor.submit(() -> {
+                try {
+                    return transactionTemplate.execute(status -> snapshotChunk(accountIds, date, dayStart, dayEnd));
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        }
+
+        int accounts = 0;
+        int failedChunks = 0;
+        for (Future<Integer> chunk : chunks) {
+            try {
+                accounts += chunk.get();
+            } catch (ExecutionException e) {
+                failedChunks++;
+                log.error("{}余额检查点分块生成失败", date, e.getCause());
+            }
+        }
+        log.info("{}余额检查点已生成：{}个账户，{}块，失败{}块", date, accounts, chunks.size(), failedChunks);
+        return new DayResult(accounts, chunks.size(), failedChunks);
+    }
+
+    private int snapshotChunk(List<Long> accountIds, LocalDate date, LocalDateTime dayStart, LocalDateTime dayEnd) {
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (BalanceSnapshot previous : balanceSnapshotRepository.findByAccountIdInAndSnapshotDate(
+                accountIds, date.minusDays(1))) {
+            balances.put(previous.getAccountId(), previous.getBalance());
+        }
+        List<Long> withPrevious = new ArrayList<>(balances.keySet());
+        List<Long> withoutPrevious = new ArrayList<>();
+        for (Long accountId : accountIds) {
+            if (!balances.containsKey(accountId)) {
+                withoutPrevious.add(accountId);
+                balances.put(accountId, BigDecimal.ZERO);
+            }
+        }
+        addFlows(balances, withPrevious, dayStart, dayEnd);
+        addFlows(balances, withoutPrevious, HISTORY_START, dayEnd);
+
+        balanceSnapshotRepository.deleteBySnapshotDateAndAccountIds(date, accountIds);
+        List<BalanceSnapshot> snapshots = new ArrayList<>(accountIds.size());
+        for (Long accountId : accountIds) {
+            BalanceSnapshot snapshot = new BalanceSnapshot();
+            snapshot.setAccountId(accountId);
+            snapshot.setSnapshotDate(date);
+            snapshot.setBalance(balances.get(accountId));
+            snapshots.add(snapshot);
+        }
+        balanceSnapshotRepository.saveAll(snapshots);
+        return snapshots.size();
+    }
+
+    private void addFlows(Map<Long, BigDecimal> balances, Collection<Long> accountIds,
+                          LocalDateTime start, LocalDateTime end) {
+        if (accountIds.isEmpty()) {
+            return;
+        }
+        for (Object[] row : transactionRepository.sumIncomingByAccount(accountIds, start, end)) {
+            balances.merge(((Number) row[0]).longValue(), (BigDecimal) row[1], BigDecimal::add);
+        }
+        for (Object[] row : transactionRepository.sumOutgoingByAccount(accountIds, start, end)) {
+            balances.merge(((Number) row[0]).longValue(), ((BigDecimal) row[1]).negate(), BigDecimal::add);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("threads", threads);
+        stats.put("chunkSize", chunkSize);
+        stats.put("latestSnapshotDate", balanceSnapshotRepository.findLatestSnapshotDate());
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    private record DayResult(int accounts, int chunks, int failedChunks) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,240 @@
+package com.digitalbank.service;
+
+import com.digitalbank.dto.TransactionDTO;
+import com.digitalbank.entity.Account;
+import com.digitalbank.entity.Transaction;
+import com.digitalbank.ledger.LedgerEngine;
+import com.digitalbank.repository.AccountRepository;
+import com.digitalbank.repository.TransactionRepository;
+import com.digitalbank.risk.TransferGraph;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 批量记账：按块在独立事务中逐笔处理，单笔失败只记录结果不影响同块其他操作
+@Service
+public class BatchTransactionService {
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private RiskControlService riskControlService;
+
+    @Autowired
+    private LedgerEngine ledgerEngine;
+
+    @Autowired
+    private LockRetryPolicy lockRetryPolicy;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private FailureJournal failureJournal;
+
+    @Autowired
+    private TransferGraph transferGraph;
+
+    @Autowired
+    private TransactionRollupService transactionRollupService;
+
+    @Value("${digitalbank.batch.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${digitalbank.batch.max-operations:10000}")
+    private int maxOperations;
+
+    public Map<String, Object> execute(List<TransactionDTO> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new RuntimeException("批量操作不能为空");
+        }
+        if (operations.size() > maxOperations) {
+            throw new RuntimeException("单次批量操作不能超过" + maxOperations + "笔");
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(operations.size());
+        for (int offset = 0; offset < operations.size(); offset += chunkSize) {
+            List<TransactionDTO> chunk = operations.subList(offset, Math.min(offset + chunkSize, operations.size()));
+            results.addAll(executeChunk(chunk, offset));
+        }
+
+        long succeeded = results.stream().filter(r -> Boolean.TRUE.equals(r.get("success"))).count();
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("total", results.size());
+        summary.put("succeeded", succeeded);
+        summary.put("failed", results.size() - succeeded);
+        summary.put("results", results);
+        return summary;
+    }
+
+    private List<Map<String, Object>> executeChunk(List<TransactionDTO> chunk, int offset) {
+        List<Map<String, Object>> results;
+        try {
+            // 整块在一个事务中提交，锁冲突时整块重试，结果以最终提交的那次为准
+            results = lockRetryPolicy.execute(() -> transactionTemplate.execute(status -> processChunk(chunk, offset)));
+        } catch (Exception e) {
+            // 整块回滚时块内每笔操作都按失败记入失败日志
+            List<Map<String, Object>> failed = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                TransactionDTO operation = chunk.get(i);
+                failureJournal.record(operation.getTransactionType(), operation.getAmount(),
+                        operation.getDescription(), "批次提交失败：" + e.getMessage());
+                failed.add(result(offset + i, null, "批次提交失败：" + e.getMessage()));
+            }
+            return failed;
+        }
+
+        // 块提交后再补记失败项，重试过的块不会重复记录
+        for (Map<String, Object> result : results) {
+            if (!Boolean.TRUE.equals(result.get("success"))) {
+                TransactionDTO operation = chunk.get((Integer) result.get("index") - offset);
+                failureJournal.record(operation.getTransactionType(), operation.getAmount(),
+                        operation.getDescription(), (String) result.get("message"));
+            }
+        }
+        return results;
+    }
+
+    private List<Map<String, Object>> processChunk(List<TransactionDTO> chunk, int offset) {
+        // 一次查询加载本块涉及的全部账户，用于关联交易记录
+        Set<String> accountNumbers = new HashSet<>();
+        for (TransactionDTO operation : chunk) {
+            if (operation.getAccountNumber() != null) {
+                accountNumbers.add(operation.getAccountNumber());
+            }
+            if (operation.getTargetAccountNumber() != null) {
+                accountNumbers.add(operation.getTargetAccountNumber());
+            }
+        }
+        Map<String, Account> accounts = new HashMap<>();
+        for (Account account : accountRepository.findByAccountNumberIn(accountNumbers)) {
+            accounts.put(account.getAccountNumber(), account);
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(chunk.size());
+        List<Transaction> transactions = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            TransactionDTO operation = chunk.get(i);
+            Transaction transaction = new Transaction();
+            transaction.setTransactionId(idGenerator.nextTransactionId());
+            transaction.setTransactionType(operation.getTransactionType());
+            transaction.setAmount(operation.getAmount());
+            transaction.setDescription(operation.getDescription());
+            try {
+                post(operation, transaction, accounts);
+                transaction.setStatus("SUCCESS");
+                transactions.add(transaction);
+                results.add(result(offset + i, transaction.getTransactionId(), null));
+            } catch (DataAccessException e) {
+                // 数据库异常不是单笔的业务失败：死锁时数据库已回滚整个事务，等锁超时会把事务标记为只能回滚，
+                // 继续处理后面的项会写入余额已被回滚的成功记录。抛出让整块回滚，锁冲突由重试策略整块重试
+                throw e;
+            } catch (RuntimeException e) {
+                results.add(result(offset + i, null, e.getMessage()));
+            }
+        }
+        // 交易记录在块提交时统一刷新，由Hibernate按JDBC批量写入
+        transactionRepository.saveAll(transactions);
+        transactionRollupService.recordAll(transactions);
+        return results;
+    }
+
+    private void post(TransactionDTO operation, Transaction transaction, Map<String, Account> accounts) {
+        BigDecimal amount = operation.getAmount();
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new RuntimeException("金额必须大于0");
+        }
+        if (operation.getTransactionType() == null) {
+            throw new RuntimeException("交易类型不能为空");
+        }
+        String accountNumber = operation.getAccountNumber();
+        String targetAccountNumber = operation.getTargetAccountNumber();
+        if (accountNumber == null) {
+            throw new RuntimeException("账户号码不能为空");
+        }
+
+        // 单笔失败时块仍会提交，所有校验和风控检查都必须在改动余额之前完成，
+        // 否则余额已变而交易记录不会写入
+        if (!accounts.containsKey(accountNumber)) {
+            throw new RuntimeException("账户不存在");
+        }
+
+        switch (operation.getTransactionType()) {
+            case "DEPOSIT" -> {
+                transaction.setToAccount(accounts.get(accountNumber));
+                riskControlService.checkDeposit(transaction);
+                if (ledgerEngine.isEnabled()) {
+                    ledgerEngine.deposit(accountNumber, amount);
+                } else {
+                    accountService.applyDeposit(accountNumber, amount);
+                }
+            }
+            case "WITHDRAWAL" -> {
+                var reservation = riskControlService.checkWithdrawal(accountNumber, amount);
+                try {
+                    if (ledgerEngine.isEnabled()) {
+                        ledgerEngine.withdraw(accountNumber, amount);
+                    } else {
+                        accountService.applyWithdraw(accountNumber, amount);
+                    }
+                } catch (RuntimeException e) {
+                    // 单笔失败不回滚整块，占用的当日额度在这里归还
+                    reservation.release();
+                    throw e;
+                }
+                transaction.setFromAccount(accounts.get(accountNumber));
+            }
+            case "TRANSFER" -> {
+                if (targetAccountNumber == null) {
+                    throw new RuntimeException("目标账户不能为空");
+                }
+                if (!accounts.containsKey(targetAccountNumber)) {
+                    throw new RuntimeException("目标账户不存在");
+                }
+                riskControlService.checkTransfer(accountNumber, targetAccountNumber, amount);
+                if (ledgerEngine.isEnabled()) {
+                    ledgerEngine.transfer(accountNumber, targetAccountNumber, amount);
+                } else {
+                    accountService.applyTransfer(accountNumber, targetAccountNumber, amount);
+                }
+                // 块提交后才进入关系图
+                transferGraph.recordTransfer(accountNumber, targetAccountNumber, amount);
+                transaction.setFromAccount(accounts.get(accountNumber));
+                transaction.setToAccount(accounts.get(targetAccountNumber));
+            }
+            default -> throw new RuntimeException("不支持的交易类型：" + operation.getTransactionType());
+        }
+    }
+
+    private Map<String, Object> result(int index, String transactionId, String failureReason) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        result.put("success", failureReason == null);
+        if (transactionId != null) {
+            result.put("transactionId", transactionId);
+        }
+        if (failureReason != null) {
+            result.put("message", failureReason);
+        }
+        return result;
+    }
+}
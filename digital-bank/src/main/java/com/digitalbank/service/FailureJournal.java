@@ -0,0 +1,132 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.Transaction;
+import com.digitalbank.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 失败交易日志：失败记录先进入有界队列立即返回，由后台线程定期批量写入独立事务，
+// 不再随记账事务一起回滚丢失，也不占用失败请求的响应时间
+@Slf4j
+@Component
+public class FailureJournal {
+    private static final int FAILURE_REASON_MAX_LENGTH = 255;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private TransactionRollupService transactionRollupService;
+
+    @Value("${digitalbank.failure-journal.capacity:10000}")
+    private int capacity;
+
+    @Value("${digitalbank.failure-journal.batch-size:200}")
+    private int batchSize;
+
+    @Value("${digitalbank.failure-journal.flush-interval-ms:200}")
+    private long flushIntervalMillis;
+
+    private BlockingQueue<Transaction> queue;
+    private TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "failure-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+
+    public void record(String transactionType, BigDecimal amount, String description, String failureReason) {
+        if (transactionType == null || amount == null) {
+            return;
+        }
+        Transaction failedTransaction = new Transaction();
+        failedTransaction.setTransactionId(idGenerator.nextTransactionId());
+        failedTransaction.setTransactionType(transactionType);
+        failedTransaction.setAmount(amount);
+        failedTransaction.setDescription(description);
+        failedTransaction.setStatus("FAILED");
+        if (failureReason != null && failureReason.length() > FAILURE_REASON_MAX_LENGTH) {
+            failureReason = failureReason.substring(0, FAILURE_REASON_MAX_LENGTH);
+        }
+        failedTransaction.setFailureReason(failureReason);
+
+        if (!queue.offer(failedTransaction)) {
+            dropped.incrementAndGet();
+            log.warn("失败交易日志队列已满，丢弃记录：{} {}", transactionType, failureReason);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getWriteErrors() {
+        return writeErrors.get();
+    }
+
+    private void flush() {
+        List<Transaction> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    transactionRepository.saveAll(batch);
+                    transactionRollupService.recordAll(batch);
+                });
+                written.addAndGet(batch.size());
+            } catch (Exception e) {
+                writeErrors.addAndGet(batch.size());
+                log.error("写入{}条失败交易记录出错", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.Account;
+import com.digitalbank.entity.AccountBalanceSlot;
+import com.digitalbank.ledger.LedgerEngine;
+import com.digitalbank.repository.AccountBalanceSlotRepository;
+import com.digitalbank.repository.AccountRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 热点账户分槽余额：高频入账分散到K个分槽行上，定期或按需归集到主余额，查询余额时主余额加各分槽之和
+@Slf4j
+@Service
+public class HotAccountService {
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private AccountBalanceSlotRepository accountBalanceSlotRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LedgerEngine ledgerEngine;
+
+    @Value("${digitalbank.hot-account.default-slots:8}")
+    private int defaultSlots;
+
+    @Value("${digitalbank.hot-account.auto-promote:false}")
+    private boolean autoPromote;
+
+    @Value("${digitalbank.hot-account.promote-credits-per-second:200}")
+    private int promoteCreditsPerSecond;
+
+    // 账号 -> 分槽信息，仅包含已拆分的账户
+    private final Map<String, SplitAccount> splitAccounts = new ConcurrentHashMap<>();
+
+    // 未拆分账户最近一秒的入账次数，用于自动升级
+    private final Map<String, CreditWindow> creditWindows = new ConcurrentHashMap<>();
+
+    private final ExecutorService promoter = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "hot-account-promoter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void loadSplitAccounts() {
+        for (Account account : accountRepository.findByBalanceSlotsGreaterThan(0)) {
+            splitAccounts.put(account.getAccountNumber(), new SplitAccount(account.getId(), account.getBalanceSlots()));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        promoter.shutdownNow();
+    }
+
+    public boolean isSplit(String accountNumber) {
+        return splitAccounts.containsKey(accountNumber);
+    }
+
+    // 入账到随机分槽，返回false表示该账户未拆分
+    public boolean creditSlot(String accountNumber, BigDecimal amount) {
+        SplitAccount split = splitAccounts.get(accountNumber);
+        if (split == null) {
+            return false;
+        }
+        int slotNo = ThreadLocalRandom.current().nextInt(split.slots());
+        accountBalanceSlotRepository.credit(split.accountId(), slotNo, amount);
+        return true;
+    }
+
+    public BigDecimal pendingSlotBalance(String accountNumber) {
+        SplitAccount split = splitAccounts.get(accountNumber);
+        if (split == null) {
+            return BigDecimal.ZERO;
+        }
+        return accountBalanceSlotRepository.sumByAccountId(split.accountId());
+    }
+
+    // 记录一次主余额入账，超过阈值时在后台把账户升级为分槽模式
+    public void recordCredit(String accountNumber) {
+        if (!autoPromote) {
+            return;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        CreditWindow window = creditWindows.computeIfAbsent(accountNumber, k -> new CreditWindow());
+        if (window.hit(second) == promoteCreditsPerSecond) {
+            promoter.execute(() -> {
+                try {
+                    promote(accountNumber, defaultSlots);
+                } catch (Exception e) {
+                    log.warn("热点账户{}自动拆分失败：{}", accountNumber, e.getMessage());
+                }
+            });
+        }
+    }
+
+    public void promote(String accountNumber, int slots) {
+        if (slots <= 1) {
+            throw new RuntimeException("分槽数必须大于1");
+        }
+        if (isSplit(accountNumber)) {
+            return;
+        }
+        SplitAccount split = transactionTemplate.execute(status -> {
+            Account account = accountRepository.findByAccountNumber(accountNumber)
+                    .orElseThrow(() -> new RuntimeException("账户不存在"));
+            List<AccountBalanceSlot> slotRows = new ArrayList<>(slots);
+            for (int i = 0; i < slots; i++) {
+                AccountBalanceSlot slot = new AccountBalanceSlot();
+                slot.setAccount(account);
+                slot.setSlotNo(i);
+                slotRows.add(slot);
+            }
+            accountBalanceSlotRepository.saveAll(slotRows);
+            // 只更新分槽数，整行保存会用读到的旧余额覆盖并发入账
+            accountRepository.updateBalanceSlots(account.getId(), slots);
+            return new SplitAccount(account.getId(), slots);
+        });
+        splitAccounts.put(accountNumber, split);
+        creditWindows.remove(accountNumber);
+        log.info("账户{}已拆分为{}个余额分槽", accountNumber, slots);
+    }
+
+    // 把分槽余额归集到主余额，调用方可在已有事务中调用（如扣款前余额不足时）
+    public BigDecimal consolidate(String accountNumber) {
+        SplitAccount split = splitAccounts.get(accountNumber);
+        if (split == null) {
+            return BigDecimal.ZERO;
+        }
+        return transactionTemplate.execute(status -> {
+            accountRepository.lockByAccountNumber(accountNumber);
+            BigDecimal pending = accountBalanceSlotRepository.lockBalancesByAccountId(split.accountId()).stream()
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            if (pending.signum() != 0) {
+                accountBalanceSlotRepository.reset(split.accountId());
+                // 账务引擎开启时主余额由内存账本独占写入，归集金额在提交后经账本入账
+                if (ledgerEngine.isEnabled()) {
+                    ledgerEngine.settle(accountNumber, pending);
+                } else {
+                    accountRepository.credit(accountNumber, pending, LocalDateTime.now());
+                }
+            }
+            return pending;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${digitalbank.hot-account.consolidate-interval-ms:1000}")
+    public void consolidateAll() {
+        for (String accountNumber : splitAccounts.keySet()) {
+            try {
+                consolidate(accountNumber);
+            } catch (Exception e) {
+                log.warn("热点账户{}归集失败：{}", accountNumber, e.getMessage());
+            }
+        }
+        // 清理已过期的入账计数窗口
+        long second = System.currentTimeMillis() / 1000;
+        creditWindows.values().removeIf(window -> window.second < second - 1);
+    }
+
+    private record SplitAccount(Long accountId, int slots) {
+    }
+
+    private static class CreditWindow {
+        volatile long second;
+        final AtomicInteger count = new AtomicInteger();
+
+        int hit(long now) {
+            if (second != now) {
+                synchronized (this) {
+                    if (second != now) {
+                        second = now;
+                        count.set(0);
+                    }
+                }
+            }
+            return count.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.digitalbank.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 雪花算法ID：41位毫秒时间戳 + 10位节点号 + 12位序号，按时间递增，
+// 交易号、风控记录号在唯一索引上近似顺序追加，不再随机分布导致页分裂
+@Component
+public class IdGenerator {
+    // 2025-01-01T00:00:00Z
+    private static final long EPOCH = 1735689600000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_CLOCK_BACKWARD_MILLIS = 5;
+    // Long.MAX_VALUE 的36进制为13位，定长输出使字符串顺序与数值顺序一致
+    private static final int ENCODED_LENGTH = 13;
+
+    private final long node;
+    private long lastTimestamp = -1;
+    private long sequence;
+
+    public IdGenerator(@Value("${digitalbank.id.node-id:0}") long node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("节点号必须在0到" + MAX_NODE + "之间");
+        }
+        this.node = node;
+    }
+
+    public synchronized long nextId() {
+        long timestamp = System.currentTimeMillis();
+        if (timestamp < lastTimestamp) {
+            // 小幅时钟回拨时等待追上，回拨过大直接拒绝以免产生重复ID
+            if (lastTimestamp - timestamp > MAX_CLOCK_BACKWARD_MILLIS) {
+                throw new IllegalStateException("系统时钟回拨" + (lastTimestamp - timestamp) + "毫秒，拒绝生成ID");
+            }
+            timestamp = waitUntil(lastTimestamp);
+        }
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                timestamp = waitUntil(lastTimestamp + 1);
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+    }
+
+    public String nextTransactionId() {
+        return "TXN" + encode(nextId());
+    }
+
+    public String nextRiskRecordId() {
+        return "RISK" + encode(nextId());
+    }
+
+    static String encode(long id) {
+        String digits = Long.toString(id, 36).toUpperCase();
+        return "0".repeat(ENCODED_LENGTH - digits.length()) + digits;
+    }
+
+    private long waitUntil(long target) {
+        long timestamp = System.currentTimeMillis();
+        while (timestamp < target) {
+            Thread.onSpinWait();
+            timestamp = System.currentTimeMillis();
+        }
+        return timestamp;
+    }
+}
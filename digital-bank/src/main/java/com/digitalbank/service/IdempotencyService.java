@@ -0,0 +1,282 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.IdempotencyRecord;
+import com.digitalbank.entity.Transaction;
+import com.digitalbank.repository.IdempotencyRecordRepository;
+import com.digitalbank.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// 记账请求幂等：同一幂等键的重试直接返回首次结果。近期结果缓存在内存（按条数和时间淘汰），
+// 同时写入数据库表，缓存淘汰或重启后仍能识别重复请求；本进程内并发的重复请求等待首个请求的结果。
+// 执行前先在数据库插入处理中记录占住幂等键，其他实例上的重复请求、以及进程在执行中崩溃后的重试
+// 看到处理中记录时返回409，不会再执行一次。只保存最终结果，锁超时、引擎繁忙等临时失败（503）释放占位可重试
+@Slf4j
+@Service
+public class IdempotencyService {
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Value("${digitalbank.idempotency.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${digitalbank.idempotency.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${digitalbank.idempotency.wait-timeout-ms:30000}")
+    private long waitTimeoutMillis;
+
+    @Value("${digitalbank.idempotency.retention-hours:24}")
+    private long retentionHours;
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    // 按写入顺序记录缓存键，超过上限时从最早的开始淘汰
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    public ResponseEntity<?> execute(String operation, String idempotencyKey, String fingerprint,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        String requestKey = operation + ":" + idempotencyKey;
+        String requestHash = hash(fingerprint);
+
+        while (true) {
+            Entry entry = new Entry(requestHash);
+            Entry existing = cache.putIfAbsent(requestKey, entry);
+            if (existing == null) {
+                insertionOrder.add(requestKey);
+                evictOverflow();
+                return runFirst(requestKey, entry, action);
+            }
+            if (existing.isExpired(ttlMinutes)) {
+                cache.remove(requestKey, existing);
+                continue;
+            }
+            if (!existing.requestHash.equals(requestHash)) {
+                return conflict();
+            }
+            ResponseEntity<?> result = await(existing);
+            if (result != null) {
+                return replayed(result);
+            }
+            // 首个请求异常结束且未产生结果，本次重新执行
+        }
+    }
+
+    private ResponseEntity<?> runFirst(String requestKey, Entry entry, Supplier<ResponseEntity<?>> action) {
+        try {
+            while (!claim(requestKey, entry.requestHash)) {
+                IdempotencyRecord record = idempotencyRecordRepository.findById(requestKey).orElse(null);
+                if (record == null) {
+                    // 占位刚被释放，重新抢占
+                    continue;
+                }
+                if (!record.getRequestHash().equals(entry.requestHash)) {
+                    cache.remove(requestKey, entry);
+                    entry.future.complete(null);
+                    return conflict();
+                }
+                if ("PENDING".equals(record.getStatus())) {
+                    // 其他实例正在处理，或处理中的进程已崩溃、结果未确认，都不能再执行
+                    cache.remove(requestKey, entry);
+                    entry.future.complete(null);
+                    return inProgress();
+                }
+                ResponseEntity<?> restored = restore(record);
+                entry.future.complete(restored);
+                return replayed(restored);
+            }
+
+            ResponseEntity<?> result;
+            try {
+                result = action.get();
+            } catch (RuntimeException e) {
+                release(requestKey);
+                throw e;
+            }
+            if (result.getStatusCode().is5xxServerError()) {
+                // 临时失败未产生结果，释放占位，同一幂等键的重试重新执行
+                release(requestKey);
+                cache.remove(requestKey, entry);
+                entry.future.complete(null);
+                return result;
+            }
+            entry.future.complete(result);
+            persist(requestKey, result);
+            return result;
+        } catch (RuntimeException e) {
+            cache.remove(requestKey, entry);
+            entry.future.complete(null);
+            throw e;
+        }
+    }
+
+    // 锁等待超时、死锁、账务引擎繁忙、风控降级拒绝等可以原样重试的失败
+    public boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean claim(String requestKey, String requestHash) {
+        try {
+            idempotencyRecordRepository.insertPending(requestKey, requestHash, LocalDateTime.now());
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private void release(String requestKey) {
+        try {
+            idempotencyRecordRepository.deletePending(requestKey);
+        } catch (Exception e) {
+            // 占位保留到过期清理，期间的重试收到409，不会重复执行
+            log.warn("幂等记录{}占位释放失败：{}", requestKey, e.getMessage());
+        }
+    }
+
+    private ResponseEntity<?> await(Entry entry) {
+        try {
+            return entry.future.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待重复请求结果被中断");
+        } catch (TimeoutException e) {
+            throw new RuntimeException("相同幂等键的请求仍在处理中，请稍后重试");
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private void persist(String requestKey, ResponseEntity<?> result) {
+        Boolean success = null;
+        String message = null;
+        String transactionId = null;
+        if (result.getBody() instanceof Map<?, ?> body) {
+            success = Boolean.TRUE.equals(body.get("success"));
+            if (body.get("message") instanceof String text) {
+                message = text.length() > 255 ? text.substring(0, 255) : text;
+            }
+            if (body.get("data") instanceof Transaction transaction) {
+                transactionId = transaction.getTransactionId();
+            }
+        }
+        try {
+            idempotencyRecordRepository.complete(requestKey, result.getStatusCode().value(), success, message, transactionId);
+        } catch (Exception e) {
+            // 内存缓存仍然有效；库中记录停留在处理中，缓存淘汰后的重试收到409而不是重复执行
+            log.warn("幂等记录{}落库失败：{}", requestKey, e.getMessage());
+        }
+    }
+
+    private ResponseEntity<?> restore(IdempotencyRecord record) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", record.getSuccess());
+        response.put("message", record.getMessage());
+        if (record.getTransactionId() != null) {
+            response.put("data", transactionRepository.findByTransactionId(record.getTransactionId()).orElse(null));
+        }
+        return ResponseEntity.status(record.getHttpStatus()).body(response);
+    }
+
+    private ResponseEntity<?> replayed(ResponseEntity<?> result) {
+        return ResponseEntity.status(result.getStatusCode())
+                .header(REPLAYED_HEADER, "true")
+                .body(result.getBody());
+    }
+
+    private ResponseEntity<?> inProgress() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", "相同幂等键的请求仍在处理中或结果未确认，请稍后查询交易记录");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
+    private ResponseEntity<?> conflict() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", "幂等键已用于参数不同的请求");
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT).body(response);
+    }
+
+    private void evictOverflow() {
+        while (cache.size() > maxEntries) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            Entry entry = cache.get(oldest);
+            // 仍在处理中的请求不淘汰，放回队尾
+            if (entry != null && !entry.future.isDone()) {
+                insertionOrder.add(oldest);
+                return;
+            }
+            cache.remove(oldest);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${digitalbank.idempotency.cleanup-interval-ms:60000}")
+    public void cleanup() {
+        cache.entrySet().removeIf(e -> e.getValue().future.isDone() && e.getValue().isExpired(ttlMinutes));
+        insertionOrder.removeIf(key -> !cache.containsKey(key));
+        idempotencyRecordRepository.deleteByCreateTimeBefore(LocalDateTime.now().minusHours(retentionHours));
+    }
+
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    private static String hash(String fingerprint) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(fingerprint.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Entry {
+        final String requestHash;
+        final long createdAt = System.nanoTime();
+        final CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
+
+        Entry(String requestHash) {
+            this.requestHash = requestHash;
+        }
+
+        boolean isExpired(long ttlMinutes) {
+            return System.nanoTime() - createdAt > TimeUnit.MINUTES.toNanos(ttlMinutes);
+        }
+    }
+}
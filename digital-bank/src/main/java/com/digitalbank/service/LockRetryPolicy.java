@@ -0,0 +1,64 @@
+package com.digitalbank.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// 行锁获取失败或被选为死锁牺牲者时，按指数退避加随机抖动重试整个事务，重试次数有上限
+@Slf4j
+@Component
+public class LockRetryPolicy {
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    public LockRetryPolicy(@Value("${digitalbank.transfer.retry.max-attempts:5}") int maxAttempts,
+                           @Value("${digitalbank.transfer.retry.base-backoff-ms:5}") long baseBackoffMillis,
+                           @Value("${digitalbank.transfer.retry.max-backoff-ms:200}") long maxBackoffMillis) {
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (PessimisticLockingFailureException e) {
+                // CannotAcquireLockException 与死锁异常均为其子类
+                if (attempt >= maxAttempts) {
+                    exhausted.incrementAndGet();
+                    throw e;
+                }
+                retries.incrementAndGet();
+                log.debug("获取行锁失败，第{}次重试：{}", attempt, e.getMessage());
+                backoff(attempt);
+            }
+        }
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("重试等待被中断");
+        }
+    }
+}
@@ -1,75 +1,398 @@
 package com.digitalbank.service;
 
+import com.digitalbank.dto.KeysetCursor;
+import com.digitalbank.dto.StatementLine;
 import com.digitalbank.entity.Transaction;
+import com.digitalbank.repository.AccountRepository;
 import com.digitalbank.repository.TransactionRepository;
+import com.digitalbank.repository.TransactionRollupRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.json.JsonMapper;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Service
 public class ReportService {
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final String[] STATEMENT_COLUMNS = {"transactionId", "transactionTime", "transactionType",
+            "direction", "counterparty", "amount", "fee", "balance", "currency", "status", "description"};
+
     @Autowired
     private TransactionRepository transactionRepository;
 
-    public Map<String, Object> getDailyReport(LocalDate date) {
+    @Autowired
+    private TransactionRollupRepository transactionRollupRepository;
+
+    @Autowired
+    private TransactionRollupService transactionRollupService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private BalanceSnapshotService balanceSnapshotService;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnlyTemplate;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+    }
+
+    // 启用交易汇总时从汇总表读取当天的分桶，否则在原始交易上按类型和状态分组；
+    // 需要明细时按页附带，cursor为上一页返回的nextCursor
+    public Map<String, Object> getDailyReport(LocalDate date, boolean includeTransactions, String cursor, int size) {
         LocalDateTime startOfDay = date.atStartOfDay();
         LocalDateTime endOfDay = date.plusDays(1).atStartOfDay();
 
-        List<Transaction> transactions = transactionRepository.findAll().stream()
-                .filter(t -> t.getTransactionTime().isAfter(startOfDay) &&
-                        t.getTransactionTime().isBefore(endOfDay))
-                .toList();
+        Map<String, Object> report = summarize(date, date);
+        report.put("date", date.toString());
 
-        BigDecimal totalDeposit = transactions.stream()
-                .filter(t -> "DEPOSIT".equals(t.getTransactionType()) && "SUCCESS".equals(t.getStatus()))
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (includeTransactions) {
+            // 首页从当天零点开始，id取最小值以包含零点整的交易；游标须落在当天
+            KeysetCursor after = KeysetCursor.parse(cursor, new KeysetCursor(startOfDay, Long.MIN_VALUE),
+                    startOfDay, endOfDay);
+            int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+            List<Transaction> transactions = transactionRepository.findPageBetween(
+                    after.getTime(), after.getId(), endOfDay, PageRequest.of(0, pageSize));
+            report.put("transactions", transactions);
+            report.put("nextCursor", KeysetCursor.next(transactions, pageSize,
+                    Transaction::getTransactionTime, Transaction::getId));
+        }
 
-        BigDecimal totalWithdrawal = transactions.stream()
-                .filter(t -> "WITHDRAWAL".equals(t.getTransactionType()) && "SUCCESS".equals(t.getStatus()))
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return report;
+    }
 
-        BigDecimal totalTransfer = transactions.stream()
-                .filter(t -> "TRANSFER".equals(t.getTransactionType()) && "SUCCESS".equals(t.getStatus()))
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    // 日期范围内的汇总，hourly为true时附带按小时的明细；已有汇总桶的日期读取量只与桶数有关，与交易笔数无关
+    public Map<String, Object> getSummary(LocalDate startDate, LocalDate endDate, boolean hourly) {
+        if (endDate.isBefore(startDate)) {
+            throw new RuntimeException("结束日期不能早于开始日期");
+        }
+        Map<String, Object> report = summarize(startDate, endDate);
+        report.put("startDate", startDate.toString());
+        report.put("endDate", endDate.toString());
+        if (hourly) {
+            if (!transactionRollupService.isEnabled()) {
+                throw new RuntimeException("未启用交易汇总，不支持按小时统计");
+            }
+            List<Map<String, Object>> hours = new ArrayList<>();
+            for (Object[] row : transactionRollupRepository.summarizeByHour(startDate, endDate)) {
+                hours.add(hourItem((LocalDate) row[0], row[1], row[2], row[3], row[4], row[5], row[6]));
+            }
+            // 没有汇总桶的日期逐天在原始交易上按小时分组，结果按币种合并
+            for (LocalDate date : datesWithoutBuckets(startDate, endDate)) {
+                Map<String, Object[]> merged = new LinkedHashMap<>();
+                for (Object[] row : transactionRepository.summarizeByHourTypeStatusCurrency(date.atStartOfDay(),
+                        date.plusDays(1).atStartOfDay())) {
+                    int hour = ((Number) row[0]).intValue();
+                    merge(merged, hour + "|" + row[1] + "|" + row[2],
+                            new Object[]{hour, row[1], row[2], row[4], row[5], row[6]});
+                }
+                for (Object[] row : merged.values()) {
+                    hours.add(hourItem(date, row[0], row[1], row[2], row[3], row[4], row[5]));
+                }
+            }
+            hours.sort(Comparator.comparing((Map<String, Object> item) -> (String) item.get("date"))
+                    .thenComparing(item -> ((Number) item.get("hour")).intValue()));
+            report.put("hourly", hours);
+        }
+        return report;
+    }
 
-        Map<String, Object> report = new HashMap<>();
-        report.put("date", date.toString());
-        report.put("totalTransactions", transactions.size());
-        report.put("totalDeposit", totalDeposit);
-        report.put("totalWithdrawal", totalWithdrawal);
-        report.put("totalTransfer", totalTransfer);
-        report.put("transactions", transactions);
+    // 汇总表的数据比原始交易最多晚一个写出间隔；启用汇总后仍没有汇总桶的日期
+    // （启用前的历史且未回填）按连续区间回退到原始交易分组，不把这些日期报成零
+    private Map<String, Object> summarize(LocalDate startDate, LocalDate endDate) {
+        Collection<Object[]> rows;
+        if (!transactionRollupService.isEnabled()) {
+            rows = transactionRepository.summarizeByTypeAndStatus(startDate.atStartOfDay(),
+                    endDate.plusDays(1).atStartOfDay());
+        } else {
+            Map<String, Object[]> merged = new LinkedHashMap<>();
+            for (Object[] row : transactionRollupRepository.summarizeByTypeAndStatus(startDate, endDate)) {
+                merge(merged, row[0] + "|" + row[1], row);
+            }
+            List<LocalDate> missing = datesWithoutBuckets(startDate, endDate);
+            for (int i = 0; i < missing.size(); ) {
+                int j = i;
+                while (j + 1 < missing.size() && missing.get(j + 1).equals(missing.get(j).plusDays(1))) {
+                    j++;
+                }
+                for (Object[] row : transactionRepository.summarizeByTypeAndStatus(missing.get(i).atStartOfDay(),
+                        missing.get(j).plusDays(1).atStartOfDay())) {
+                    merge(merged, row[0] + "|" + row[1], row);
+                }
+                i = j + 1;
+            }
+            rows = merged.values();
+        }
+
+        long totalTransactions = 0;
+        BigDecimal totalFee = BigDecimal.ZERO;
+        Map<String, BigDecimal> successAmounts = new HashMap<>();
+        List<Map<String, Object>> byTypeAndStatus = new ArrayList<>();
+        for (Object[] row : rows) {
+            String type = (String) row[0];
+            String status = (String) row[1];
+            long count = ((Number) row[2]).longValue();
+            BigDecimal amount = row[3] == null ? BigDecimal.ZERO : (BigDecimal) row[3];
+            BigDecimal fee = row[4] == null ? BigDecimal.ZERO : (BigDecimal) row[4];
+            totalTransactions += count;
+            if ("SUCCESS".equals(status)) {
+                successAmounts.merge(type, amount, BigDecimal::add);
+                totalFee = totalFee.add(fee);
+            }
+            Map<String, Object> item = new HashMap<>();
+            item.put("transactionType", type);
+            item.put("status", status);
+            item.put("count", count);
+            item.put("amount", amount);
+            item.put("fee", fee);
+            byTypeAndStatus.add(item);
+        }
 
+        Map<String, Object> report = new HashMap<>();
+        report.put("totalTransactions", totalTransactions);
+        report.put("totalDeposit", successAmounts.getOrDefault("DEPOSIT", BigDecimal.ZERO));
+        report.put("totalWithdrawal", successAmounts.getOrDefault("WITHDRAWAL", BigDecimal.ZERO));
+        report.put("totalTransfer", successAmounts.getOrDefault("TRANSFER", BigDecimal.ZERO));
+        report.put("totalFee", totalFee);
+        report.put("byTypeAndStatus", byTypeAndStatus);
         return report;
     }
 
+    private List<LocalDate> datesWithoutBuckets(LocalDate startDate, LocalDate endDate) {
+        Set<LocalDate> covered = new HashSet<>(transactionRollupRepository.findBucketDates(startDate, endDate));
+        List<LocalDate> missing = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            if (!covered.contains(date)) {
+                missing.add(date);
+            }
+        }
+        return missing;
+    }
+
+    // 同一键的分组行合并：末尾三列依次为笔数、金额、手续费
+    private void merge(Map<String, Object[]> merged, String key, Object[] row) {
+        Object[] existing = merged.get(key);
+        if (existing == null) {
+            merged.put(key, row.clone());
+            return;
+        }
+        int n = row.length;
+        existing[n - 3] = ((Number) existing[n - 3]).longValue() + ((Number) row[n - 3]).longValue();
+        existing[n - 2] = add((BigDecimal) existing[n - 2], (BigDecimal) row[n - 2]);
+        existing[n - 1] = add((BigDecimal) existing[n - 1], (BigDecimal) row[n - 1]);
+    }
+
+    private BigDecimal add(BigDecimal a, BigDecimal b) {
+        return a == null ? b : b == null ? a : a.add(b);
+    }
+
+    private Map<String, Object> hourItem(LocalDate date, Object hour, Object type, Object status,
+                                         Object count, Object amount, Object fee) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("date", date.toString());
+        item.put("hour", hour);
+        item.put("transactionType", type);
+        item.put("status", status);
+        item.put("count", ((Number) count).longValue());
+        item.put("amount", amount);
+        item.put("fee", fee);
+        return item;
+    }
+
+    // 期初余额取自最近的余额检查点加其后到开始日期的交易，之后按时间正序逐笔累加出每笔交易后的余额
     public Map<String, Object> getAccountStatement(String accountNumber, LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new RuntimeException("结束日期不能早于开始日期");
+        }
+        Long accountId = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new RuntimeException("账户不存在")).getId();
         LocalDateTime startDateTime = startDate.atStartOfDay();
         LocalDateTime endDateTime = endDate.plusDays(1).atStartOfDay();
 
-        List<Transaction> transactions = transactionRepository.findAll().stream()
-                .filter(t -> (t.getFromAccount() != null && accountNumber.equals(t.getFromAccount().getAccountNumber())) ||
-                        (t.getToAccount() != null && accountNumber.equals(t.getToAccount().getAccountNumber())))
-                .filter(t -> t.getTransactionTime().isAfter(startDateTime) &&
-                        t.getTransactionTime().isBefore(endDateTime))
-                .sorted((t1, t2) -> t2.getTransactionTime().compareTo(t1.getTransactionTime()))
-                .toList();
+        BigDecimal openingBalance = balanceSnapshotService.balanceAsOf(accountId, startDateTime);
+        List<StatementLine> transactions = readOnlyTemplate.execute(status -> {
+            List<StatementLine> result = new ArrayList<>();
+            BigDecimal balance = openingBalance;
+            try (Stream<StatementLine> lines = transactionRepository.streamStatement(accountId, startDateTime, endDateTime)) {
+                Iterator<StatementLine> iterator = lines.iterator();
+                while (iterator.hasNext()) {
+                    StatementLine line = iterator.next();
+                    balance = balance.add(change(line, accountNumber));
+                    line.setBalance(balance);
+                    result.add(line);
+                }
+            }
+            return result;
+        });
 
         Map<String, Object> statement = new HashMap<>();
         statement.put("accountNumber", accountNumber);
         statement.put("startDate", startDate.toString());
         statement.put("endDate", endDate.toString());
+        statement.put("openingBalance", openingBalance);
+        statement.put("closingBalance", transactions.isEmpty()
+                ? openingBalance : transactions.get(transactions.size() - 1).getBalance());
         statement.put("transactionCount", transactions.size());
         statement.put("transactions", transactions);
 
         return statement;
     }
+
+    // 导出对账单：参数在返回前校验，出错时仍可返回错误信息；写出时逐行从数据库读出并写入响应，
+    // 内存占用与对账单长度无关。format为csv或ndjson
+    public StreamingResponseBody exportStatement(String accountNumber, LocalDate startDate, LocalDate endDate,
+                                                 String format) {
+        if (!"csv".equals(format) && !"ndjson".equals(format)) {
+            throw new RuntimeException("不支持的导出格式：" + format);
+        }
+        if (endDate.isBefore(startDate)) {
+            throw new RuntimeException("结束日期不能早于开始日期");
+        }
+        Long accountId = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new RuntimeException("账户不存在")).getId();
+        LocalDateTime start = startDate.atStartOfDay();
+        LocalDateTime end = endDate.plusDays(1).atStartOfDay();
+        BigDecimal openingBalance = balanceSnapshotService.balanceAsOf(accountId, start);
+
+        return out -> readOnlyTemplate.executeWithoutResult(status -> {
+            try (Stream<StatementLine> lines = transactionRepository.streamStatement(accountId, start, end)) {
+                if ("csv".equals(format)) {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    writeCsv(lines, accountNumber, openingBalance, writer);
+                    writer.flush();
+                } else {
+                    writeNdjson(lines, accountNumber, openingBalance, out);
+                }
+            } catch (IOException e) {
+                // 客户端中途断开
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void writeCsv(Stream<StatementLine> lines, String accountNumber, BigDecimal openingBalance,
+                          Writer writer) throws IOException {
+        writer.write(String.join(",", STATEMENT_COLUMNS));
+        writer.write("\r\n");
+        BigDecimal balance = openingBalance;
+        Iterator<StatementLine> iterator = lines.iterator();
+        while (iterator.hasNext()) {
+            StatementLine line = iterator.next();
+            boolean incoming = accountNumber.equals(line.getToAccountNumber());
+            balance = balance.add(change(line, accountNumber));
+            writer.write(line.getTransactionId());
+            writer.write(',');
+            writer.write(line.getTransactionTime().toString());
+            writer.write(',');
+            writer.write(line.getTransactionType());
+            writer.write(',');
+            writer.write(incoming ? "IN" : "OUT");
+            writer.write(',');
+            writer.write(csv(incoming ? line.getFromAccountNumber() : line.getToAccountNumber()));
+            writer.write(',');
+            writer.write(line.getAmount().toPlainString());
+            writer.write(',');
+            writer.write(line.getFee() == null ? "" : line.getFee().toPlainString());
+            writer.write(',');
+            writer.write(balance.toPlainString());
+            writer.write(',');
+            writer.write(csv(line.getCurrency()));
+            writer.write(',');
+            writer.write(csv(line.getStatus()));
+            writer.write(',');
+            writer.write(csv(line.getDescription()));
+            writer.write("\r\n");
+        }
+    }
+
+    private void writeNdjson(Stream<StatementLine> lines, String accountNumber, BigDecimal openingBalance,
+                             OutputStream out) {
+        // 不写根值分隔符，每个对象后自行换行；生成器直接按UTF-8写出，不关闭响应流
+        JsonGenerator generator = jsonMapper.writer()
+                .withRootValueSeparator((String) null)
+                .without(StreamWriteFeature.AUTO_CLOSE_TARGET)
+                .createGenerator(out);
+        BigDecimal balance = openingBalance;
+        Iterator<StatementLine> iterator = lines.iterator();
+        while (iterator.hasNext()) {
+            StatementLine line = iterator.next();
+            boolean incoming = accountNumber.equals(line.getToAccountNumber());
+            balance = balance.add(change(line, accountNumber));
+            generator.writeStartObject();
+            generator.writeStringProperty("transactionId", line.getTransactionId());
+            generator.writeStringProperty("transactionTime", line.getTransactionTime().toString());
+            generator.writeStringProperty("transactionType", line.getTransactionType());
+            generator.writeStringProperty("direction", incoming ? "IN" : "OUT");
+            generator.writeStringProperty("counterparty", incoming ? line.getFromAccountNumber() : line.getToAccountNumber());
+            generator.writeNumberProperty("amount", line.getAmount());
+            if (line.getFee() != null) {
+                generator.writeNumberProperty("fee", line.getFee());
+            }
+            generator.writeNumberProperty("balance", balance);
+            generator.writeStringProperty("currency", line.getCurrency());
+            generator.writeStringProperty("status", line.getStatus());
+            generator.writeStringProperty("description", line.getDescription());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.close();
+    }
+
+    // 只有成功的交易改变余额
+    private static BigDecimal change(StatementLine line, String accountNumber) {
+        if (!"SUCCESS".equals(line.getStatus())) {
+            return BigDecimal.ZERO;
+        }
+        return accountNumber.equals(line.getToAccountNumber()) ? line.getAmount() : line.getAmount().negate();
+    }
+
+    // 含逗号、引号或换行的字段加引号；以=+-@开头的文本前加单引号，防止表格软件当作公式执行
+    private static String csv(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        if ("=+-@".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,293 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.RiskControlRecord;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 风控告警推送：告警写入环形缓冲区并分发到每个订阅者自己的有界队列，由发送线程池逐个写出。
+// 发布方从不等待客户端；订阅者队列满或单次写出超时时断开该连接，客户端带Last-Event-ID重连后从缓冲区补齐。
+// 写出是阻塞的，发送线程池按订阅者数量弹性扩容，卡住的连接只占住自己的线程，其他订阅者照常接收
+@Component
+public class RiskAlertStream {
+    private static final Event HEARTBEAT = new Event(0, null, null);
+    private static final Event RETRY = new Event(0, null, null);
+
+    @Value("${digitalbank.risk.stream.buffer-size:1000}")
+    private int bufferSize;
+
+    @Value("${digitalbank.risk.stream.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${digitalbank.risk.stream.max-subscribers:100}")
+    private int maxSubscribers;
+
+    @Value("${digitalbank.risk.stream.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    @Value("${digitalbank.risk.stream.heartbeat-ms:15000}")
+    private long heartbeatMillis;
+
+    @Value("${digitalbank.risk.stream.retry-ms:3000}")
+    private long retryMillis;
+
+    @Value("${digitalbank.risk.stream.sender-threads:2}")
+    private int senderThreads;
+
+    @Value("${digitalbank.risk.stream.write-timeout-ms:10000}")
+    private long writeTimeoutMillis;
+
+    private Event[] buffer;
+    private long startEventId;
+    private long lastEventId;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private ExecutorService senders;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "risk-stream-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong stalled = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        buffer = new Event[bufferSize];
+        // 事件编号从启动时刻起递增，重启后客户端带来的旧编号一定小于新编号，按缺口处理
+        startEventId = System.currentTimeMillis() * 1000;
+        lastEventId = startEventId;
+        AtomicInteger counter = new AtomicInteger();
+        // 每个订阅者同一时间最多一个发送任务，线程数上限为订阅者上限，任务不会被拒绝；空闲的扩容线程一分钟后回收
+        senders = new ThreadPoolExecutor(senderThreads, Math.max(senderThreads, maxSubscribers + 1),
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "risk-stream-sender-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::disconnectStalled, 1, 1, TimeUnit.SECONDS);
+        heartbeat.scheduleWithFixedDelay(() -> {
+            for (Subscriber subscriber : subscribers) {
+                // 队列里有待发事件时不需要心跳
+                if (subscriber.queue.isEmpty() && subscriber.queue.offer(HEARTBEAT)) {
+                    subscriber.schedule();
+                }
+            }
+        }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeat.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+        senders.shutdownNow();
+    }
+
+    public void publish(List<RiskControlRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (RiskControlRecord record : records) {
+                Event event = new Event(++lastEventId, "risk-alert", toPayload(record));
+                buffer[(int) (event.id % bufferSize)] = event;
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.offer(event);
+                }
+            }
+        }
+    }
+
+    // lastEventId为客户端重连时带上的Last-Event-ID，先补发缓冲区中之后的告警再接收新告警；
+    // 补发和注册在同一把锁内完成，中间产生的告警不会丢失也不会重复
+    public SseEmitter subscribe(Long lastEventId) {
+        if (subscribers.size() >= maxSubscribers) {
+            rejected.incrementAndGet();
+            throw new RuntimeException("告警订阅数已达上限");
+        }
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMillis));
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onError(e -> subscribers.remove(subscriber));
+        // 先写出重连间隔，响应头随之发出，客户端无需等到第一条告警才确认连接建立
+        subscriber.queue.offer(RETRY);
+        synchronized (this) {
+            if (lastEventId != null && lastEventId < this.lastEventId) {
+                // 缓冲区和订阅者队列都只能容纳有限的历史，更早的告警需通过/api/risk/records查询
+                long oldest = Math.max(startEventId,
+                        Math.max(this.lastEventId - bufferSize, this.lastEventId - (queueCapacity - 2)));
+                long from = Math.max(lastEventId, oldest);
+                if (from > lastEventId) {
+                    Map<String, Object> gap = new HashMap<>();
+                    gap.put("lastEventId", lastEventId);
+                    gap.put("resumedFrom", from + 1);
+                    subscriber.queue.offer(new Event(0, "gap", gap));
+                }
+                for (long id = from + 1; id <= this.lastEventId; id++) {
+                    subscriber.queue.offer(buffer[(int) (id % bufferSize)]);
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        subscriber.schedule();
+        return subscriber.emitter;
+    }
+
+    // 单次写出超过限时的订阅者视为卡住：不再投递并中断其发送线程，连接在写出返回后结束。
+    // 不在这里调用emitter，写出阻塞时emitter的方法会等待同一把写锁
+    private void disconnectStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince;
+            Thread sender = subscriber.sender;
+            if (since != 0 && now - since > TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis)) {
+                stalled.incrementAndGet();
+                subscriber.close();
+                if (sender != null && subscriber.sendingSince == since) {
+                    sender.interrupt();
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        List<Integer> queueDepths = new ArrayList<>();
+        for (Subscriber subscriber : subscribers) {
+            queueDepths.add(subscriber.queue.size());
+        }
+        synchronized (this) {
+            stats.put("lastEventId", lastEventId);
+        }
+        stats.put("subscribers", subscribers.size());
+        stats.put("queueDepths", queueDepths);
+        stats.put("bufferSize", bufferSize);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("delivered", delivered.get());
+        stats.put("overflowed", overflowed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("stalled", stalled.get());
+        return stats;
+    }
+
+    private Map<String, Object> toPayload(RiskControlRecord record) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("id", record.getId());
+        payload.put("recordId", record.getRecordId());
+        payload.put("riskType", record.getRiskType());
+        payload.put("riskLevel", record.getRiskLevel());
+        payload.put("status", record.getStatus());
+        payload.put("description", record.getDescription());
+        payload.put("createTime", record.getCreateTime());
+        return payload;
+    }
+
+    private static class Event {
+        private final long id;
+        private final String name;
+        private final Object data;
+
+        private Event(long id, String name, Object data) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    // 每个订阅者同一时间最多占用一个发送线程，慢客户端只拖慢自己
+    private class Subscriber implements Runnable {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+        // 当前写出开始的时间（System.nanoTime），0表示没有在写
+        private volatile long sendingSince;
+        private volatile Thread sender;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(Event event) {
+            if (!queue.offer(event)) {
+                overflowed.incrementAndGet();
+                close();
+            }
+            schedule();
+        }
+
+        // 停止投递，连接由发送线程结束，发布方和检查线程都不碰可能正在阻塞写出的emitter
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+        }
+
+        private void schedule() {
+            if ((closed || !queue.isEmpty()) && scheduled.compareAndSet(false, true)) {
+                senders.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            sender = Thread.currentThread();
+            try {
+                Event event;
+                while (!closed && (event = queue.poll()) != null) {
+                    sendingSince = System.nanoTime();
+                    if (event == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else if (event == RETRY) {
+                        emitter.send(SseEmitter.event().reconnectTime(retryMillis));
+                    } else if (event.id == 0) {
+                        emitter.send(SseEmitter.event().name(event.name).data(event.data));
+                    } else {
+                        emitter.send(SseEmitter.event().id(String.valueOf(event.id)).name(event.name).data(event.data));
+                        delivered.incrementAndGet();
+                    }
+                    sendingSince = 0;
+                }
+                if (closed) {
+                    emitter.complete();
+                    return;
+                }
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开或连接已结束，容器会自行结束异步请求，这里只清理订阅
+                close();
+                return;
+            } finally {
+                sendingSince = 0;
+                sender = null;
+                // 清除超时检查留下的中断标记，线程回到池中继续服务其他订阅者
+                Thread.interrupted();
+                scheduled.set(false);
+            }
+            schedule();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,281 @@
+package com.digitalbank.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// 风控检查限时：检查在独立线程池上执行，记账线程最多等待各类检查的时间预算。
+// 超时、出错或线程池已满都算失败，连续失败达到阈值时熔断，熔断期间不再提交检查；
+// 熔断时间过后放一笔试探，成功则恢复。检查未完成时按降级策略放行并标记（allow）或拒绝交易（reject）
+@Slf4j
+@Component
+public class RiskCheckGuard {
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+    private static final String[] STATE_NAMES = {"CLOSED", "OPEN", "HALF_OPEN"};
+
+    // 延迟直方图按微秒取以2为底的对数分桶，最后一桶约为35分钟以上
+    private static final int BUCKETS = 32;
+
+    @Value("${digitalbank.risk.guard.enabled:true}")
+    private boolean enabled;
+
+    @Value("${digitalbank.risk.guard.threads:8}")
+    private int threads;
+
+    @Value("${digitalbank.risk.guard.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${digitalbank.risk.guard.deposit-timeout-ms:200}")
+    private long depositTimeoutMillis;
+
+    @Value("${digitalbank.risk.guard.withdrawal-timeout-ms:200}")
+    private long withdrawalTimeoutMillis;
+
+    @Value("${digitalbank.risk.guard.transfer-timeout-ms:200}")
+    private long transferTimeoutMillis;
+
+    @Value("${digitalbank.risk.guard.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${digitalbank.risk.guard.open-ms:10000}")
+    private long openMillis;
+
+    @Value("${digitalbank.risk.guard.degraded-policy:allow}")
+    private String degradedPolicy;
+
+    private ThreadPoolExecutor executor;
+    private boolean rejectWhenDegraded;
+
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private volatile long openedAt;
+
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong poolRejected = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+    private final AtomicLong breakerOpens = new AtomicLong();
+    private final AtomicLong degradedAllowed = new AtomicLong();
+    private final AtomicLong degradedRejected = new AtomicLong();
+    private final Map<String, LongAdder[]> histograms = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        rejectWhenDegraded = "reject".equalsIgnoreCase(degradedPolicy);
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "risk-check-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    // 在预算内完成检查返回true；未完成时按降级策略返回false（放行并标记）或抛出异常（拒绝）。
+    // 超时的检查不中断，在后台线程上自行结束，结果丢弃
+    public boolean run(String check, Runnable evaluation) {
+        long start = System.nanoTime();
+        try {
+            if (!enabled) {
+                evaluation.run();
+                return true;
+            }
+            if (!allowRequest()) {
+                shortCircuited.incrementAndGet();
+                return degraded(check, "风控检查已熔断");
+            }
+            Future<?> future;
+            try {
+                future = executor.submit(evaluation);
+            } catch (RejectedExecutionException e) {
+                poolRejected.incrementAndGet();
+                onFailure();
+                return degraded(check, "风控检查线程池已满");
+            }
+            try {
+                future.get(timeoutMillis(check), TimeUnit.MILLISECONDS);
+                onSuccess();
+                return true;
+            } catch (TimeoutException e) {
+                timeouts.incrementAndGet();
+                onFailure();
+                return degraded(check, "风控检查超时");
+            } catch (ExecutionException e) {
+                errors.incrementAndGet();
+                onFailure();
+                log.warn("{}风控检查出错：{}", check, e.getCause().getMessage());
+                return degraded(check, "风控检查出错");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                onFailure();
+                return degraded(check, "风控检查被中断");
+            }
+        } finally {
+            record(check, System.nanoTime() - start);
+        }
+    }
+
+    private long timeoutMillis(String check) {
+        return switch (check) {
+            case "WITHDRAWAL" -> withdrawalTimeoutMillis;
+            case "TRANSFER" -> transferTimeoutMillis;
+            default -> depositTimeoutMillis;
+        };
+    }
+
+    private boolean degraded(String check, String reason) {
+        if (rejectWhenDegraded) {
+            degradedRejected.incrementAndGet();
+            throw new TransientDataAccessResourceException(reason + "，交易暂不受理，请稍后重试");
+        }
+        degradedAllowed.incrementAndGet();
+        log.warn("{}，{}交易降级放行", reason, check);
+        return false;
+    }
+
+    private boolean allowRequest() {
+        int current = state.get();
+        if (current == CLOSED) {
+            return true;
+        }
+        // 熔断时间已过，只放一笔试探，其余继续走降级
+        if (current == OPEN && System.currentTimeMillis() - openedAt >= openMillis
+                && probing.compareAndSet(false, true)) {
+            state.set(HALF_OPEN);
+            return true;
+        }
+        return false;
+    }
+
+    private void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.get() == HALF_OPEN) {
+            state.set(CLOSED);
+            probing.set(false);
+            log.info("风控检查恢复，熔断关闭");
+        }
+    }
+
+    private void onFailure() {
+        if (state.get() == HALF_OPEN) {
+            open();
+            probing.set(false);
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && state.get() == CLOSED) {
+            // 先写熔断时间再切换状态，其他线程看到OPEN时时间已是本次的
+            openedAt = System.currentTimeMillis();
+            if (state.compareAndSet(CLOSED, OPEN)) {
+                breakerOpens.incrementAndGet();
+                log.warn("风控检查连续失败{}次，熔断{}毫秒", failureThreshold, openMillis);
+            }
+        }
+    }
+
+    private void open() {
+        openedAt = System.currentTimeMillis();
+        state.set(OPEN);
+        breakerOpens.incrementAndGet();
+    }
+
+    private void record(String check, long nanos) {
+        LongAdder[] buckets = histograms.computeIfAbsent(check, key -> {
+            LongAdder[] created = new LongAdder[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                created[i] = new LongAdder();
+            }
+            return created;
+        });
+        long micros = nanos / 1000;
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("state", STATE_NAMES[state.get()]);
+        stats.put("consecutiveFailures", consecutiveFailures.get());
+        stats.put("degradedPolicy", rejectWhenDegraded ? "reject" : "allow");
+        stats.put("timeoutsMillis", Map.of("DEPOSIT", depositTimeoutMillis,
+                "WITHDRAWAL", withdrawalTimeoutMillis, "TRANSFER", transferTimeoutMillis));
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("timeouts", timeouts.get());
+        stats.put("errors", errors.get());
+        stats.put("poolRejected", poolRejected.get());
+        stats.put("shortCircuited", shortCircuited.get());
+        stats.put("breakerOpens", breakerOpens.get());
+        stats.put("degradedAllowed", degradedAllowed.get());
+        stats.put("degradedRejected", degradedRejected.get());
+
+        Map<String, Object> latency = new HashMap<>();
+        histograms.forEach((check, buckets) -> latency.put(check, histogram(buckets)));
+        stats.put("latency", latency);
+        return stats;
+    }
+
+    // 桶的键为该桶的延迟上限（微秒），分位数取所在桶的上限
+    private Map<String, Object> histogram(LongAdder[] buckets) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        Map<String, Long> nonEmpty = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] > 0) {
+                nonEmpty.put("<" + (1L << i) + "us", counts[i]);
+            }
+        }
+        Map<String, Object> histogram = new HashMap<>();
+        histogram.put("count", total);
+        histogram.put("p50Micros", percentile(counts, total, 0.50));
+        histogram.put("p99Micros", percentile(counts, total, 0.99));
+        histogram.put("p999Micros", percentile(counts, total, 0.999));
+        histogram.put("buckets", nonEmpty);
+        return histogram;
+    }
+
+    private long percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return 1L << i;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+}
\ No newline at end of file
@@ -3,94 +3,263 @@ package com.digitalbank.service;
 import com.digitalbank.entity.RiskControlRecord;
 import com.digitalbank.entity.Transaction;
 import com.digitalbank.repository.AccountRepository;
-import com.digitalbank.repository.RiskControlRecordRepository;
-import com.digitalbank.repository.TransactionRepository;
+import com.digitalbank.risk.DailyWithdrawalCounter;
+import com.digitalbank.risk.RiskContext;
+import com.digitalbank.risk.RiskRule;
+import com.digitalbank.risk.RiskRuleEngine;
+import com.digitalbank.risk.ShadowRiskEvaluator;
+import com.digitalbank.risk.TransferGraph;
+import com.digitalbank.risk.TransferScorer;
+import com.digitalbank.risk.VelocityTracker;
+import com.digitalbank.risk.WatchList;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 @Service
 public class RiskControlService {
     @Autowired
-    private RiskControlRecordRepository riskControlRecordRepository;
+    private RiskRecordWriter riskRecordWriter;
 
     @Autowired
-    private TransactionRepository transactionRepository;
+    private AccountRepository accountRepository;
 
     @Autowired
-    private AccountRepository accountRepository;
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private DailyWithdrawalCounter dailyWithdrawalCounter;
 
-    private static final BigDecimal LARGE_AMOUNT_THRESHOLD = new BigDecimal("50000");
-    private static final BigDecimal DAILY_WITHDRAWAL_LIMIT = new BigDecimal("20000");
+    @Autowired
+    private VelocityTracker velocityTracker;
+
+    @Autowired
+    private WatchList watchList;
+
+    @Autowired
+    private RiskRuleEngine riskRuleEngine;
+
+    @Autowired
+    private TransferGraph transferGraph;
+
+    @Autowired
+    private ShadowRiskEvaluator shadowRiskEvaluator;
+
+    @Autowired
+    private RiskCheckGuard riskCheckGuard;
+
+    @Autowired
+    private TransferScorer transferScorer;
+
+    @PostConstruct
+    public void init() {
+        // 关系图在后台线程上发现的资金回流、过渡账户，以可疑记录上报
+        transferGraph.setAlertSink(alert -> createRiskRecord(null, "SUSPICIOUS", alert.riskLevel(), alert.description()));
+    }
 
     public void checkDeposit(Transaction transaction) {
-        // 大额存款检查
-        if (transaction.getAmount().compareTo(LARGE_AMOUNT_THRESHOLD) > 0) {
-            createRiskRecord(transaction, "LARGE_AMOUNT", "MEDIUM",
-                    "大额存款：" + transaction.getAmount());
-        }
+        String accountNumber = transaction.getToAccount() == null ? null : transaction.getToAccount().getAccountNumber();
+        RiskContext context = newContext("DEPOSIT", accountNumber, null, transaction.getAmount());
+        context.setAccount(transaction.getToAccount());
+
+        List<RiskControlRecord> records = new ArrayList<>(2);
+        boolean checked = riskCheckGuard.run("DEPOSIT", () -> {
+            try {
+                // 交易频率检查
+                checkVelocity(context, records);
+
+                // 规则检查（大额存款等）
+                applyRules(context, transaction, records);
+            } finally {
+                // 影子规则在独立线程池上对比，不占用记账时间
+                shadowRiskEvaluator.submit(context);
+            }
+        });
+        complete(context, transaction, records, checked);
     }
 
-    public void checkWithdrawal(String accountNumber, BigDecimal amount) {
-        // 大额取款检查
-        if (amount.compareTo(LARGE_AMOUNT_THRESHOLD) > 0) {
-            createRiskRecord(null, "LARGE_AMOUNT", "HIGH",
-                    "大额取款：" + amount + "，账户：" + accountNumber);
-        }
+    public DailyWithdrawalCounter.Reservation checkWithdrawal(String accountNumber, BigDecimal amount) {
+        RiskContext context = newContext("WITHDRAWAL", accountNumber, null, amount);
+        List<RiskControlRecord> records = new ArrayList<>(2);
+        boolean checked = riskCheckGuard.run("WITHDRAWAL", () -> {
+            // 交易频率检查
+            checkVelocity(context, records);
+
+            // 规则检查（大额取款等）
+            applyRules(context, null, records);
 
-        // 检查当日取款总额
-        LocalDateTime todayStart = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
-        List<Transaction> todayWithdrawals = transactionRepository.findAll().stream()
-                .filter(t -> "WITHDRAWAL".equals(t.getTransactionType()))
-                .filter(t -> t.getFromAccount() != null && accountNumber.equals(t.getFromAccount().getAccountNumber()))
-                .filter(t -> t.getTransactionTime().isAfter(todayStart))
-                .toList();
+            // 额度规则用到的账户在这里预先加载，记账线程上只做内存中的额度判断
+            if (riskRuleEngine.needsAccount("WITHDRAWAL")) {
+                context.getAccount();
+            }
+        });
+        complete(context, null, records, checked);
 
-        BigDecimal dailyTotal = todayWithdrawals.stream()
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // 降级放行时检查可能仍在风控线程上使用原来的上下文，额度判断另建一份且不再加载账户
+        RiskContext limitContext = checked ? context : newContext("WITHDRAWAL", accountNumber, null, amount);
+        if (!checked) {
+            limitContext.setAccountLoader(null);
+        }
 
-        if (dailyTotal.add(amount).compareTo(DAILY_WITHDRAWAL_LIMIT) > 0) {
-            throw new RuntimeException("超过当日取款限额");
+        // 引用当日取款额的拒绝规则在计数器内判断，通过时占用当日额度，取款失败或事务回滚时归还
+        RiskRule[] limitRules = riskRuleEngine.withdrawalLimitRules();
+        RiskRule[] rejectedBy = new RiskRule[1];
+        long start = System.nanoTime();
+        try {
+            DailyWithdrawalCounter.Reservation reservation = dailyWithdrawalCounter.tryReserve(accountNumber, amount, used -> {
+                limitContext.setDailyWithdrawal(used / 100.0);
+                for (RiskRule rule : limitRules) {
+                    if (rule.matches(limitContext)) {
+                        rejectedBy[0] = rule;
+                        return false;
+                    }
+                }
+                return true;
+            });
+            riskRuleEngine.recordTiming("WITHDRAWAL_LIMIT", System.nanoTime() - start);
+            if (reservation == null) {
+                limitContext.getFiredRules().add(rejectedBy[0]);
+                throw new RuntimeException(rejectedBy[0].describe(limitContext));
+            }
+            return reservation;
+        } finally {
+            if (checked) {
+                shadowRiskEvaluator.submit(context);
+            }
         }
     }
 
     public void checkTransfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount) {
-        // 大额转账检查
-        if (amount.compareTo(LARGE_AMOUNT_THRESHOLD) > 0) {
-            createRiskRecord(null, "LARGE_AMOUNT", "HIGH",
-                    "大额转账：" + amount + "，从" + fromAccountNumber + "到" + toAccountNumber);
+        RiskContext context = newContext("TRANSFER", fromAccountNumber, toAccountNumber, amount);
+        List<RiskControlRecord> records = new ArrayList<>(2);
+        boolean checked = riskCheckGuard.run("TRANSFER", () -> {
+            try {
+                // 交易频率检查
+                checkVelocity(context, records);
+
+                // 规则检查（大额转账等）
+                applyRules(context, null, records);
+            } finally {
+                shadowRiskEvaluator.submit(context);
+            }
+
+            if (isRejected(context)) {
+                return;
+            }
+
+            // 检查是否为可疑账户（简化版）
+            if (isSuspiciousAccount(toAccountNumber)) {
+                records.add(newRiskRecord(null, "SUSPICIOUS", "HIGH",
+                        "向可疑账户转账，账户：" + toAccountNumber));
+            }
+
+            // 模型评分，达到阈值时按评分给出的风险等级记录
+            if (transferScorer.isEnabled()) {
+                String riskLevel = transferScorer.evaluate(context);
+                if (riskLevel != null) {
+                    records.add(newRiskRecord(null, "SCORE", riskLevel, String.format("转账评分%.3f：%s→%s，金额%s",
+                            context.getScore(), fromAccountNumber, toAccountNumber, amount)));
+                }
+            }
+        });
+        complete(context, null, records, checked);
+    }
+
+    // 回到记账线程：提交检查产生的风控记录，命中拒绝规则时拒绝交易；检查未完成时记录一条未检查标记
+    private void complete(RiskContext context, Transaction transaction, List<RiskControlRecord> records, boolean checked) {
+        if (!checked) {
+            createRiskRecord(transaction, "UNCHECKED", "MEDIUM", "风控检查未完成，交易降级放行：" + context.getType()
+                    + " " + context.getAmountValue() + "，账户：" + context.getAccountNumber());
+            return;
+        }
+        for (RiskControlRecord record : records) {
+            riskRecordWriter.submit(record);
         }
+        for (RiskRule rule : context.getFiredRules()) {
+            if (rule.getAction() == RiskRule.Action.REJECT) {
+                throw new RuntimeException(rule.describe(context));
+            }
+        }
+    }
+
+    private boolean isRejected(RiskContext context) {
+        List<RiskRule> fired = context.getFiredRules();
+        return !fired.isEmpty() && fired.get(fired.size() - 1).getAction() == RiskRule.Action.REJECT;
+    }
+
+    private RiskContext newContext(String type, String accountNumber, String targetAccountNumber, BigDecimal amount) {
+        RiskContext context = new RiskContext(type, accountNumber, targetAccountNumber, amount);
+        context.setHour(LocalTime.now().getHour());
+        context.setDailyWithdrawal(dailyWithdrawalCounter.getTodayTotal(accountNumber).doubleValue());
+        context.setAccountLoader(() -> accountRepository.findByAccountNumber(accountNumber).orElse(null));
+        return context;
+    }
 
-        // 检查是否为可疑账户（简化版）
-        if (isSuspiciousAccount(toAccountNumber)) {
-            createRiskRecord(null, "SUSPICIOUS", "HIGH",
-                    "向可疑账户转账，账户：" + toAccountNumber);
+    // 拒绝规则只记入已命中规则，由记账线程抛出；命中拒绝规则时不再产生风控记录
+    private void applyRules(RiskContext context, Transaction transaction, List<RiskControlRecord> records) {
+        long start = System.nanoTime();
+        List<RiskRule> matched = new ArrayList<>(2);
+        for (RiskRule rule : riskRuleEngine.rulesFor(context.getType())) {
+            if (rule.matches(context)) {
+                context.getFiredRules().add(rule);
+                if (rule.getAction() == RiskRule.Action.REJECT) {
+                    riskRuleEngine.recordTiming(context.getType(), System.nanoTime() - start);
+                    return;
+                }
+                matched.add(rule);
+            }
+        }
+        riskRuleEngine.recordTiming(context.getType(), System.nanoTime() - start);
+
+        for (RiskRule rule : matched) {
+            records.add(newRiskRecord(transaction, rule.getRiskType(), rule.getRiskLevel(), rule.describe(context)));
+        }
+    }
+
+    private void checkVelocity(RiskContext context, List<RiskControlRecord> records) {
+        // 频率告警针对账户而非单笔交易，不关联交易记录
+        String accountNumber = context.getAccountNumber();
+        int crossed = velocityTracker.record(accountNumber, context.getAmountValue(), context.getVelocity());
+        if (crossed == 0) {
+            return;
+        }
+        for (int w = 0; w < VelocityTracker.WINDOWS; w++) {
+            // 窗口越短风险等级越高
+            String riskLevel = w == 0 ? "HIGH" : w == 1 ? "MEDIUM" : "LOW";
+            if ((crossed & (1 << w)) != 0) {
+                records.add(newRiskRecord(null, "FREQUENT", riskLevel,
+                        VelocityTracker.WINDOW_NAMES[w] + "内交易笔数过多，账户：" + accountNumber));
+            }
+            if ((crossed & (1 << (w + VelocityTracker.WINDOWS))) != 0) {
+                records.add(newRiskRecord(null, "FREQUENT", riskLevel,
+                        VelocityTracker.WINDOW_NAMES[w] + "内交易金额过大，账户：" + accountNumber));
+            }
         }
     }
 
     private boolean isSuspiciousAccount(String accountNumber) {
-        // 这里可以连接外部风控系统或使用规则引擎
-        // 简化实现：检查是否在可疑账户列表中
-        List<String> suspiciousAccounts = List.of("可疑账户1", "可疑账户2");
-        return suspiciousAccounts.contains(accountNumber);
+        // 可疑账户名单从本地文件加载，文件变化时自动重新加载
+        return watchList.contains(accountNumber);
     }
 
-    private void createRiskRecord(Transaction transaction, String riskType,
-                                  String riskLevel, String description) {
+    private RiskControlRecord newRiskRecord(Transaction transaction, String riskType,
+                                            String riskLevel, String description) {
         RiskControlRecord record = new RiskControlRecord();
-        record.setRecordId("RISK" + UUID.randomUUID().toString().replace("-", "").substring(0, 16).toUpperCase());
+        record.setRecordId(idGenerator.nextRiskRecordId());
         record.setTransaction(transaction);
         record.setRiskType(riskType);
         record.setRiskLevel(riskLevel);
         record.setDescription(description);
+        return record;
+    }
 
-        riskControlRecordRepository.save(record);
-
-        // 这里可以发送告警通知，记录日志等
-        System.out.println("风控告警：" + description);
+    private void createRiskRecord(Transaction transaction, String riskType,
+                                  String riskLevel, String description) {
+        // 批量异步落库，告警日志在写入后输出，不占用记账事务
+        riskRecordWriter.submit(newRiskRecord(transaction, riskType, riskLevel, description));
     }
 }
\ No newline at end of file
@@ -0,0 +1,245 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.RiskControlRecord;
+import com.digitalbank.entity.RiskRecordOutbox;
+import com.digitalbank.entity.Transaction;
+import com.digitalbank.repository.RiskControlRecordRepository;
+import com.digitalbank.repository.RiskRecordOutboxRepository;
+import com.digitalbank.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 风控记录写入：记账事务中产生的风控记录先挂在当前事务上，不在记账路径上单独插入。
+// async模式：事务提交后进入有界队列，由后台线程按批量或定时写入，进程崩溃时队列中的记录会丢失；
+// outbox模式：提交前随记账事务一起批量写入发件箱表，保证不丢，再由后台线程批量转存到风控记录表
+@Slf4j
+@Component
+public class RiskRecordWriter {
+    @Autowired
+    private RiskControlRecordRepository riskControlRecordRepository;
+
+    @Autowired
+    private RiskRecordOutboxRepository riskRecordOutboxRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RiskAlertStream riskAlertStream;
+
+    @Value("${digitalbank.risk.records.mode:async}")
+    private String mode;
+
+    @Value("${digitalbank.risk.records.capacity:10000}")
+    private int capacity;
+
+    @Value("${digitalbank.risk.records.batch-size:200}")
+    private int batchSize;
+
+    @Value("${digitalbank.risk.records.flush-interval-ms:200}")
+    private long flushIntervalMillis;
+
+    private boolean outbox;
+    private BlockingQueue<RiskControlRecord> queue;
+    private TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "risk-record-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        outbox = "outbox".equalsIgnoreCase(mode);
+        queue = new ArrayBlockingQueue<>(capacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+
+    public void submit(RiskControlRecord record) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (outbox) {
+                riskRecordOutboxRepository.save(toOutbox(record));
+            } else {
+                enqueue(record);
+            }
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<RiskControlRecord> pending = (List<RiskControlRecord>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<RiskControlRecord> records = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, records);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // 关联的交易记录此时已保存并分配主键
+                    if (outbox) {
+                        List<RiskRecordOutbox> rows = new ArrayList<>(records.size());
+                        for (RiskControlRecord pendingRecord : records) {
+                            rows.add(toOutbox(pendingRecord));
+                        }
+                        riskRecordOutboxRepository.saveAll(rows);
+                    }
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(RiskRecordWriter.this);
+                    // 记账回滚时风控记录一并丢弃
+                    if (status == STATUS_COMMITTED && !outbox) {
+                        for (RiskControlRecord pendingRecord : records) {
+                            enqueue(pendingRecord);
+                        }
+                    }
+                }
+            });
+            pending = records;
+        }
+        pending.add(record);
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getWriteErrors() {
+        return writeErrors.get();
+    }
+
+    public String getMode() {
+        return outbox ? "outbox" : "async";
+    }
+
+    private void enqueue(RiskControlRecord record) {
+        Transaction transaction = record.getTransaction();
+        if (transaction != null && transaction.getId() == null) {
+            record.setTransaction(null);
+        }
+        if (!queue.offer(record)) {
+            dropped.incrementAndGet();
+            log.warn("风控记录队列已满，丢弃记录：{}", record.getDescription());
+        }
+    }
+
+    private RiskRecordOutbox toOutbox(RiskControlRecord record) {
+        RiskRecordOutbox row = new RiskRecordOutbox();
+        row.setRecordId(record.getRecordId());
+        row.setTransactionRef(record.getTransaction() == null ? null : record.getTransaction().getId());
+        row.setRiskType(record.getRiskType());
+        row.setRiskLevel(record.getRiskLevel());
+        row.setDescription(record.getDescription());
+        row.setCreateTime(record.getCreateTime());
+        return row;
+    }
+
+    private void flush() {
+        try {
+            if (outbox) {
+                relayOutbox();
+            } else {
+                drainQueue();
+            }
+        } catch (Exception e) {
+            log.error("风控记录写入出错", e);
+        }
+    }
+
+    private void drainQueue() {
+        List<RiskControlRecord> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> riskControlRecordRepository.saveAll(batch));
+                written.addAndGet(batch.size());
+                alert(batch);
+            } catch (Exception e) {
+                writeErrors.addAndGet(batch.size());
+                log.error("写入{}条风控记录出错", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    // 转存和删除发件箱在同一事务中完成，失败时整批留在发件箱等待下次重试
+    private void relayOutbox() {
+        while (true) {
+            List<RiskControlRecord> batch = new ArrayList<>(batchSize);
+            Integer moved = transactionTemplate.execute(status -> {
+                List<RiskRecordOutbox> rows = riskRecordOutboxRepository.findByOrderByIdAsc(PageRequest.of(0, batchSize));
+                for (RiskRecordOutbox row : rows) {
+                    RiskControlRecord record = new RiskControlRecord();
+                    record.setRecordId(row.getRecordId());
+                    if (row.getTransactionRef() != null) {
+                        record.setTransaction(transactionRepository.getReferenceById(row.getTransactionRef()));
+                    }
+                    record.setRiskType(row.getRiskType());
+                    record.setRiskLevel(row.getRiskLevel());
+                    record.setDescription(row.getDescription());
+                    record.setCreateTime(row.getCreateTime());
+                    batch.add(record);
+                }
+                riskControlRecordRepository.saveAll(batch);
+                riskRecordOutboxRepository.deleteAllInBatch(rows);
+                return rows.size();
+            });
+            if (moved == null || moved == 0) {
+                return;
+            }
+            written.addAndGet(moved);
+            alert(batch);
+            if (moved < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private void alert(List<RiskControlRecord> batch) {
+        for (RiskControlRecord record : batch) {
+            log.warn("风控告警：{}", record.getDescription());
+        }
+        // 记录已落库，推送给订阅告警流的客户端
+        riskAlertStream.publish(batch);
+    }
+}
@@ -0,0 +1,357 @@
+package com.digitalbank.service;
+
+import com.digitalbank.entity.Transaction;
+import com.digitalbank.entity.TransactionRollup;
+import com.digitalbank.repository.TransactionRepository;
+import com.digitalbank.repository.TransactionRollupRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 交易汇总维护：记账事务提交后把交易的增量合并到内存中的分桶累计，由后台线程定期批量累加到汇总表。
+// 同一小时的交易只落在少数几行上，不在记账事务里更新汇总行，记账之间不会争用这几行的行锁；
+// 进程崩溃时尚未写出的增量会丢失，由每日核对发现后按原始交易重建
+@Slf4j
+@Component
+public class TransactionRollupService {
+    private static final int MAX_RANGE_DAYS = 366;
+    private static final int MAX_REPORTED_MISMATCHES = 100;
+
+    @Autowired
+    private TransactionRollupRepository transactionRollupRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${digitalbank.rollup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${digitalbank.rollup.flush-interval-ms:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${digitalbank.rollup.auto-repair:true}")
+    private boolean autoRepair;
+
+    private final Map<Bucket, Delta> pending = new ConcurrentHashMap<>();
+    private TransactionTemplate transactionTemplate;
+    // 写出、重建和核对都在这一个线程上执行，互不交错
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "transaction-rollup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedBuckets = new AtomicLong();
+    private final AtomicLong flushErrors = new AtomicLong();
+    private final AtomicLong rebuiltDays = new AtomicLong();
+    private volatile Map<String, Object> lastCheck;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(Transaction transaction) {
+        recordAll(List.of(transaction));
+    }
+
+    // 在事务中调用时，提交后才计入汇总，回滚的交易不计入
+    public void recordAll(Collection<Transaction> transactions) {
+        if (!enabled || transactions.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            transactions.forEach(this::add);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Transaction> pendingTransactions = (List<Transaction>) TransactionSynchronizationManager.getResource(this);
+        if (pendingTransactions == null) {
+            List<Transaction> uncommitted = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, uncommitted);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TransactionRollupService.this);
+                    if (status == STATUS_COMMITTED) {
+                        uncommitted.forEach(TransactionRollupService.this::add);
+                    }
+                }
+            });
+            pendingTransactions = uncommitted;
+        }
+        pendingTransactions.addAll(transactions);
+    }
+
+    private void add(Transaction transaction) {
+        if (transaction.getTransactionType() == null || transaction.getStatus() == null
+                || transaction.getTransactionTime() == null) {
+            return;
+        }
+        pending.merge(bucketOf(transaction), new Delta(1, nonNull(transaction.getAmount()),
+                nonNull(transaction.getFee())), Delta::plus);
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Bucket, Delta> batch = new HashMap<>();
+        for (Bucket bucket : pending.keySet()) {
+            Delta delta = pending.remove(bucket);
+            if (delta != null) {
+                batch.put(bucket, delta);
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                for (Map.Entry<Bucket, Delta> entry : batch.entrySet()) {
+                    Bucket bucket = entry.getKey();
+                    Delta delta = entry.getValue();
+                    int updated = transactionRollupRepository.increment(bucket.date(), bucket.hour(),
+                            bucket.transactionType(), bucket.status(), bucket.currency(),
+                            delta.count(), delta.amount(), delta.fee(), now);
+                    if (updated == 0) {
+                        transactionRollupRepository.save(toRollup(bucket, delta));
+                    }
+                }
+            });
+            flushes.incrementAndGet();
+            flushedBuckets.addAndGet(batch.size());
+        } catch (Exception e) {
+            // 整批回滚，增量放回内存下次再写；其他实例抢先插入同一桶时下次会走累加
+            batch.forEach((bucket, delta) -> pending.merge(bucket, delta, Delta::plus));
+            flushErrors.incrementAndGet();
+            log.error("写入{}个交易汇总桶出错", batch.size(), e);
+        }
+    }
+
+    // 按原始交易重新计算每一天的汇总桶，用于回填历史数据或修复核对出的差异。
+    // 重建当天时，恰在读取前提交、尚未合并增量的交易会被重复计入，可再次核对确认
+    public Map<String, Object> rebuild(LocalDate startDate, LocalDate endDate) {
+        checkRange(startDate, endDate);
+        return onFlusher(() -> {
+            flush();
+            int buckets = 0;
+            for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+                LocalDate day = date;
+                buckets += transactionTemplate.execute(status -> {
+                    transactionRollupRepository.deleteByBucketDate(day);
+                    List<TransactionRollup> rows = new ArrayList<>();
+                    actual(day).forEach((bucket, delta) -> rows.add(toRollup(bucket, delta)));
+                    transactionRollupRepository.saveAll(rows);
+                    return rows.size();
+                });
+                rebuiltDays.incrementAndGet();
+            }
+            log.info("交易汇总已重建：{} 至 {}，共{}个桶", startDate, endDate, buckets);
+            Map<String, Object> result = new HashMap<>();
+            result.put("startDate", startDate.toString());
+            result.put("endDate", endDate.toString());
+            result.put("days", ChronoUnit.DAYS.between(startDate, endDate) + 1);
+            result.put("buckets", buckets);
+            return result;
+        });
+    }
+
+    // 逐天比较汇总表和原始交易的分组结果，先写出内存中的增量再比较
+    public Map<String, Object> check(LocalDate startDate, LocalDate endDate) {
+        checkRange(startDate, endDate);
+        return onFlusher(() -> {
+            flush();
+            List<Map<String, Object>> mismatches = new ArrayList<>();
+            long mismatchCount = 0;
+            int buckets = 0;
+            for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+                Map<Bucket, Delta> actual = actual(date);
+                Map<Bucket, Delta> rolled = new HashMap<>();
+                for (TransactionRollup rollup : transactionRollupRepository.findByBucketDate(date)) {
+                    rolled.put(new Bucket(rollup.getBucketDate(), rollup.getBucketHour(), rollup.getTransactionType(),
+                                    rollup.getStatus(), rollup.getCurrency()),
+                            new Delta(rollup.getTxCount(), rollup.getAmountSum(), rollup.getFeeSum()));
+                }
+                Set<Bucket> keys = new HashSet<>(actual.keySet());
+                keys.addAll(rolled.keySet());
+                buckets += keys.size();
+                for (Bucket bucket : keys) {
+                    Delta expected = actual.getOrDefault(bucket, Delta.ZERO);
+                    Delta found = rolled.getOrDefault(bucket, Delta.ZERO);
+                    if (expected.sameAs(found)) {
+                        continue;
+                    }
+                    mismatchCount++;
+                    if (mismatches.size() < MAX_REPORTED_MISMATCHES) {
+                        Map<String, Object> mismatch = new HashMap<>();
+                        mismatch.put("date", bucket.date().toString());
+                        mismatch.put("hour", bucket.hour());
+                        mismatch.put("transactionType", bucket.transactionType());
+                        mismatch.put("status", bucket.status());
+                        mismatch.put("currency", bucket.currency());
+                        mismatch.put("rollupCount", found.count());
+                        mismatch.put("actualCount", expected.count());
+                        mismatch.put("rollupAmount", found.amount());
+                        mismatch.put("actualAmount", expected.amount());
+                        mismatch.put("rollupFee", found.fee());
+                        mismatch.put("actualFee", expected.fee());
+                        mismatches.add(mismatch);
+                    }
+                }
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("startDate", startDate.toString());
+            result.put("endDate", endDate.toString());
+            result.put("checkedBuckets", buckets);
+            result.put("consistent", mismatchCount == 0);
+            result.put("mismatchCount", mismatchCount);
+            result.put("mismatches", mismatches);
+            result.put("checkTime", LocalDateTime.now());
+            lastCheck = result;
+            return result;
+        });
+    }
+
+    // 每天核对前一天的汇总，不一致时按配置自动重建
+    @Scheduled(cron = "${digitalbank.rollup.check-cron:0 10 0 * * *}")
+    public void checkYesterday() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        Map<String, Object> result = check(yesterday, yesterday);
+        if (Boolean.TRUE.equals(result.get("consistent"))) {
+            return;
+        }
+        log.warn("{}交易汇总与原始交易不一致，差异桶数：{}", yesterday, result.get("mismatchCount"));
+        if (autoRepair) {
+            rebuild(yesterday, yesterday);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pendingBuckets", pending.size());
+        stats.put("flushes", flushes.get());
+        stats.put("flushedBuckets", flushedBuckets.get());
+        stats.put("flushErrors", flushErrors.get());
+        stats.put("rebuiltDays", rebuiltDays.get());
+        stats.put("lastCheck", lastCheck);
+        return stats;
+    }
+
+    private Map<Bucket, Delta> actual(LocalDate date) {
+        Map<Bucket, Delta> buckets = new HashMap<>();
+        for (Object[] row : transactionRepository.summarizeByHourTypeStatusCurrency(
+                date.atStartOfDay(), date.plusDays(1).atStartOfDay())) {
+            Bucket bucket = new Bucket(date, ((Number) row[0]).intValue(), (String) row[1], (String) row[2],
+                    row[3] == null ? "CNY" : (String) row[3]);
+            buckets.merge(bucket, new Delta(((Number) row[4]).longValue(), nonNull((BigDecimal) row[5]),
+                    nonNull((BigDecimal) row[6])), Delta::plus);
+        }
+        return buckets;
+    }
+
+    private <T> T onFlusher(Callable<T> task) {
+        try {
+            return flusher.submit(task).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("交易汇总任务被中断");
+        }
+    }
+
+    private static void checkRange(LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new RuntimeException("结束日期不能早于开始日期");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) >= MAX_RANGE_DAYS) {
+            throw new RuntimeException("日期范围不能超过" + MAX_RANGE_DAYS + "天");
+        }
+    }
+
+    private static Bucket bucketOf(Transaction transaction) {
+        LocalDateTime time = transaction.getTransactionTime();
+        return new Bucket(time.toLocalDate(), time.getHour(), transaction.getTransactionType(),
+                transaction.getStatus(), transaction.getCurrency() == null ? "CNY" : transaction.getCurrency());
+    }
+
+    private static TransactionRollup toRollup(Bucket bucket, Delta delta) {
+        TransactionRollup rollup = new TransactionRollup();
+        rollup.setBucketDate(bucket.date());
+        rollup.setBucketHour(bucket.hour());
+        rollup.setTransactionType(bucket.transactionType());
+        rollup.setStatus(bucket.status());
+        rollup.setCurrency(bucket.currency());
+        rollup.setTxCount(delta.count());
+        rollup.setAmountSum(delta.amount());
+        rollup.setFeeSum(delta.fee());
+        return rollup;
+    }
+
+    private static BigDecimal nonNull(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+
+    private record Bucket(LocalDate date, int hour, String transactionType, String status, String currency) {
+    }
+
+    private record Delta(long count, BigDecimal amount, BigDecimal fee) {
+        private static final Delta ZERO = new Delta(0, BigDecimal.ZERO, BigDecimal.ZERO);
+
+        private Delta plus(Delta other) {
+            return new Delta(count + other.count, amount.add(other.amount), fee.add(other.fee));
+        }
+
+        private boolean sameAs(Delta other) {
+            return count == other.count && amount.compareTo(other.amount) == 0 && fee.compareTo(other.fee) == 0;
+        }
+    }
+}
\ No newline at end of file
@@ -2,13 +2,15 @@ package com.digitalbank.service;
 
 import com.digitalbank.entity.Account;
 import com.digitalbank.entity.Transaction;
+import com.digitalbank.ledger.LedgerEngine;
 import com.digitalbank.repository.AccountRepository;
 import com.digitalbank.repository.TransactionRepository;
+import com.digitalbank.risk.TransferGraph;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.math.BigDecimal;
-import java.util.UUID;
 
 @Service
 public class TransactionService {
@@ -24,15 +26,43 @@ public class TransactionService {
     @Autowired
     private RiskControlService riskControlService;
 
+    @Autowired
+    private LedgerEngine ledgerEngine;
+
+    @Autowired
+    private AccountLockTable accountLockTable;
+
+    @Autowired
+    private LockRetryPolicy lockRetryPolicy;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private FailureJournal failureJournal;
+
+    @Autowired
+    private TransferGraph transferGraph;
+
+    @Autowired
+    private TransactionRollupService transactionRollupService;
+
     @Transactional
     public Transaction deposit(String accountNumber, BigDecimal amount, String description) {
         try {
             // 执行存款
-            accountService.deposit(accountNumber, amount);
+            if (ledgerEngine.isEnabled()) {
+                ledgerEngine.deposit(accountNumber, amount);
+            } else {
+                accountService.deposit(accountNumber, amount);
+            }
 
             // 创建交易记录
             Transaction transaction = new Transaction();
-            transaction.setTransactionId(generateTransactionId());
+            transaction.setTransactionId(idGenerator.nextTransactionId());
             transaction.setTransactionType("DEPOSIT");
             transaction.setToAccount(accountRepository.findByAccountNumber(accountNumber).orElse(null));
             transaction.setAmount(amount);
@@ -42,17 +72,12 @@ public class TransactionService {
             // 风控检查
             riskControlService.checkDeposit(transaction);
 
+            // 提交后计入交易汇总
+            transactionRollupService.record(transaction);
             return transactionRepository.save(transaction);
         } catch (Exception e) {
-            Transaction failedTransaction = new Transaction();
-            failedTransaction.setTransactionId(generateTransactionId());
-            failedTransaction.setTransactionType("DEPOSIT");
-            failedTransaction.setAmount(amount);
-            failedTransaction.setDescription(description);
-            failedTransaction.setStatus("FAILED");
-            failedTransaction.setFailureReason(e.getMessage());
-            transactionRepository.save(failedTransaction);
-
+            // 失败记录交给异步日志独立落库，不随本事务回滚
+            failureJournal.record("DEPOSIT", amount, description, e.getMessage());
             throw e;
         }
     }
@@ -64,69 +89,72 @@ public class TransactionService {
             riskControlService.checkWithdrawal(accountNumber, amount);
 
             // 执行取款
-            accountService.withdraw(accountNumber, amount);
+            if (ledgerEngine.isEnabled()) {
+                ledgerEngine.withdraw(accountNumber, amount);
+            } else {
+                accountService.withdraw(accountNumber, amount);
+            }
 
             // 创建交易记录
             Transaction transaction = new Transaction();
-            transaction.setTransactionId(generateTransactionId());
+            transaction.setTransactionId(idGenerator.nextTransactionId());
             transaction.setTransactionType("WITHDRAWAL");
             transaction.setFromAccount(accountRepository.findByAccountNumber(accountNumber).orElse(null));
             transaction.setAmount(amount);
             transaction.setDescription(description);
             transaction.setStatus("SUCCESS");
 
+            // 提交后计入交易汇总
+            transactionRollupService.record(transaction);
             return transactionRepository.save(transaction);
         } catch (Exception e) {
-            Transaction failedTransaction = new Transaction();
-            failedTransaction.setTransactionId(generateTransactionId());
-            failedTransaction.setTransactionType("WITHDRAWAL");
-            failedTransaction.setAmount(amount);
-            failedTransaction.setDescription(description);
-            failedTransaction.setStatus("FAILED");
-            failedTransaction.setFailureReason(e.getMessage());
-            transactionRepository.save(failedTransaction);
-
+            // 失败记录交给异步日志独立落库，不随本事务回滚
+            failureJournal.record("WITHDRAWAL", amount, description, e.getMessage());
             throw e;
         }
     }
 
-    @Transactional
     public Transaction transfer(String fromAccountNumber, String toAccountNumber,
                                 BigDecimal amount, String description) {
         try {
-            // 风控检查
-            riskControlService.checkTransfer(fromAccountNumber, toAccountNumber, amount);
-
-            // 执行转账
-            accountService.withdraw(fromAccountNumber, amount);
-            accountService.deposit(toAccountNumber, amount);
-
-            // 创建交易记录
-            Transaction transaction = new Transaction();
-            transaction.setTransactionId(generateTransactionId());
-            transaction.setTransactionType("TRANSFER");
-            transaction.setFromAccount(accountRepository.findByAccountNumber(fromAccountNumber).orElse(null));
-            transaction.setToAccount(accountRepository.findByAccountNumber(toAccountNumber).orElse(null));
-            transaction.setAmount(amount);
-            transaction.setDescription(description);
-            transaction.setStatus("SUCCESS");
-
-            return transactionRepository.save(transaction);
+            // 进程内按固定顺序锁住双方账户，锁冲突或死锁时整笔事务重试
+            Transaction transaction = lockRetryPolicy.execute(() -> accountLockTable.withLocks(fromAccountNumber, toAccountNumber,
+                    () -> transactionTemplate.execute(status ->
+                            doTransfer(fromAccountNumber, toAccountNumber, amount, description))));
+            // 已提交的转账进入关系图，由后台线程做回流和过渡账户分析
+            transferGraph.recordTransfer(fromAccountNumber, toAccountNumber, amount);
+            return transaction;
         } catch (Exception e) {
-            Transaction failedTransaction = new Transaction();
-            failedTransaction.setTransactionId(generateTransactionId());
-            failedTransaction.setTransactionType("TRANSFER");
-            failedTransaction.setAmount(amount);
-            failedTransaction.setDescription(description);
-            failedTransaction.setStatus("FAILED");
-            failedTransaction.setFailureReason(e.getMessage());
-            transactionRepository.save(failedTransaction);
-
+            // 失败记录交给异步日志独立落库，不随本事务回滚
+            failureJournal.record("TRANSFER", amount, description, e.getMessage());
             throw e;
         }
     }
 
-    private String generateTransactionId() {
-        return "TXN" + UUID.randomUUID().toString().replace("-", "").substring(0, 20).toUpperCase();
+    private Transaction doTransfer(String fromAccountNumber, String toAccountNumber,
+                                   BigDecimal amount, String description) {
+        // 风控检查
+        riskControlService.checkTransfer(fromAccountNumber, toAccountNumber, amount);
+
+        // 执行转账
+        if (ledgerEngine.isEnabled()) {
+            ledgerEngine.transfer(fromAccountNumber, toAccountNumber, amount);
+        } else {
+            accountService.transfer(fromAccountNumber, toAccountNumber, amount);
+        }
+
+        // 创建交易记录
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(idGenerator.nextTransactionId());
+        transaction.setTransactionType("TRANSFER");
+        transaction.setFromAccount(accountRepository.findByAccountNumber(fromAccountNumber).orElse(null));
+        transaction.setToAccount(accountRepository.findByAccountNumber(toAccountNumber).orElse(null));
+        transaction.setAmount(amount);
+        transaction.setDescription(description);
+        transaction.setStatus("SUCCESS");
+
+        // 提交后计入交易汇总
+        transactionRollupService.record(transaction);
+        return transactionRepository.save(transaction);
     }
 }
\ No newline at end of file
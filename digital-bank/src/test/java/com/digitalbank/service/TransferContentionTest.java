@@ -0,0 +1,240 @@
+package com.digitalbank.service;
+
+import com.digitalbank.repository.AccountRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// 相向转账压力测试：AccountService.applyTransfer、AccountLockTable、LockRetryPolicy 均为实际代码，
+// 只把账户仓库换成内存行表：FOR UPDATE 行锁持有到事务结束，等锁超时抛出与数据库相同的异常，事务失败时回滚余额
+class TransferContentionTest {
+    private static final int THREADS = 16;
+    private static final int TRANSFERS = 4000;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000");
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+    private static final String A = "6222020000000000018";
+    private static final String B = "6222020000000000026";
+
+    @Test
+    void opposingTransfersWithOrderedLocks() throws Exception {
+        SimulatedDatabase database = new SimulatedDatabase(2);
+        AccountService accountService = accountService(database.repository);
+        AccountLockTable lockTable = new AccountLockTable(1024);
+        LockRetryPolicy retryPolicy = new LockRetryPolicy(5, 1, 20);
+
+        Result result = run((from, to) -> retryPolicy.execute(() -> lockTable.withLocks(from, to,
+                () -> database.inTransaction(() -> accountService.applyTransfer(from, to, AMOUNT)))));
+
+        report("ordered", result, retryPolicy);
+        assertEquals(TRANSFERS, result.succeeded);
+        assertEquals(0, retryPolicy.getExhausted());
+        assertEquals(0, INITIAL_BALANCE.add(INITIAL_BALANCE).compareTo(database.total()));
+    }
+
+    @Test
+    void opposingTransfersWithoutProcessLocksDoNotDeadlock() throws Exception {
+        // 不加进程内锁时双方只在数据库行锁上排队，固定加锁顺序下不会出现相互等待，全部在重试上限内完成
+        SimulatedDatabase database = new SimulatedDatabase(50);
+        AccountService accountService = accountService(database.repository);
+        LockRetryPolicy retryPolicy = new LockRetryPolicy(50, 1, 5);
+
+        Result result = run((from, to) -> retryPolicy.execute(
+                () -> database.inTransaction(() -> accountService.applyTransfer(from, to, AMOUNT))));
+
+        report("row-locks-only", result, retryPolicy);
+        assertEquals(TRANSFERS, result.succeeded);
+        assertEquals(0, retryPolicy.getExhausted());
+        assertEquals(0, INITIAL_BALANCE.add(INITIAL_BALANCE).compareTo(database.total()));
+    }
+
+    @Test
+    void locksAccountsInCanonicalOrder() {
+        SimulatedDatabase database = new SimulatedDatabase(2);
+        AccountService accountService = accountService(database.repository);
+
+        database.inTransaction(() -> accountService.applyTransfer(B, A, AMOUNT));
+
+        // B→A 同样先锁账号较小的 A，再锁 B，然后才扣款入账
+        InOrder order = inOrder(database.repository);
+        order.verify(database.repository).lockByAccountNumber(A);
+        order.verify(database.repository).lockByAccountNumber(B);
+        order.verify(database.repository).debit(any(), any(), any());
+        order.verify(database.repository).credit(any(), any(), any());
+    }
+
+    @Test
+    void retriedTransferIsAppliedOnce() {
+        // 扣款后第一次等锁超时，整笔事务回滚再重试，最终只记一次
+        SimulatedDatabase database = new SimulatedDatabase(2);
+        AccountService accountService = accountService(database.repository);
+        LockRetryPolicy retryPolicy = new LockRetryPolicy(5, 1, 5);
+        database.failCredits.set(1);
+
+        retryPolicy.execute(() -> database.inTransaction(() -> accountService.applyTransfer(A, B, AMOUNT)));
+
+        assertEquals(1, retryPolicy.getRetries());
+        assertEquals(0, INITIAL_BALANCE.subtract(AMOUNT).compareTo(database.balances.get(A)));
+        assertEquals(0, INITIAL_BALANCE.add(AMOUNT).compareTo(database.balances.get(B)));
+    }
+
+    private AccountService accountService(AccountRepository repository) {
+        HotAccountService hotAccountService = mock(HotAccountService.class);
+        AccountService accountService = new AccountService();
+        ReflectionTestUtils.setField(accountService, "accountRepository", repository);
+        ReflectionTestUtils.setField(accountService, "hotAccountService", hotAccountService);
+        return accountService;
+    }
+
+    private Result run(Transfer transfer) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>(TRANSFERS);
+        long start = System.nanoTime();
+        for (int i = 0; i < TRANSFERS; i++) {
+            boolean forward = i % 2 == 0;
+            futures.add(executor.submit(() -> transfer.apply(forward ? A : B, forward ? B : A)));
+        }
+        int succeeded = 0;
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+            succeeded++;
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        return new Result(succeeded, elapsed);
+    }
+
+    private void report(String name, Result result, LockRetryPolicy retryPolicy) {
+        double seconds = result.elapsedNanos / 1_000_000_000.0;
+        System.out.printf("[%s] transfers=%d, elapsed=%.3fs, throughput=%.0f/s, retries=%d, exhausted=%d%n",
+                name, result.succeeded, seconds, result.succeeded / seconds,
+                retryPolicy.getRetries(), retryPolicy.getExhausted());
+    }
+
+    private interface Transfer {
+        Object apply(String from, String to);
+    }
+
+    private record Result(int succeeded, long elapsedNanos) {
+    }
+
+    // 内存行表：每个账户一把行锁，当前线程在事务内持有的锁和余额变更在事务结束时释放或回滚
+    private static class SimulatedDatabase {
+        final AccountRepository repository = mock(AccountRepository.class);
+        final Map<String, BigDecimal> balances = new ConcurrentHashMap<>();
+        final Map<String, ReentrantLock> rowLocks = new ConcurrentHashMap<>();
+        final AtomicInteger failCredits = new AtomicInteger();
+        private final long lockWaitMillis;
+        private final ThreadLocal<List<ReentrantLock>> heldLocks = ThreadLocal.withInitial(ArrayList::new);
+        private final ThreadLocal<List<Runnable>> undoLog = ThreadLocal.withInitial(ArrayList::new);
+
+        SimulatedDatabase(long lockWaitMillis) {
+            this.lockWaitMillis = lockWaitMillis;
+            for (String accountNumber : List.of(A, B)) {
+                balances.put(accountNumber, INITIAL_BALANCE);
+                rowLocks.put(accountNumber, new ReentrantLock());
+            }
+            when(repository.lockByAccountNumber(anyString())).thenAnswer(invocation -> {
+                String accountNumber = invocation.getArgument(0);
+                lockRow(accountNumber);
+                return Optional.of(1L);
+            });
+            when(repository.debit(anyString(), any(), any())).thenAnswer(invocation -> {
+                String accountNumber = invocation.getArgument(0);
+                BigDecimal amount = invocation.getArgument(1);
+                lockRow(accountNumber);
+                if (balances.get(accountNumber).compareTo(amount) < 0) {
+                    return 0;
+                }
+                change(accountNumber, amount.negate());
+                return 1;
+            });
+            when(repository.credit(anyString(), any(), any())).thenAnswer(invocation -> {
+                String accountNumber = invocation.getArgument(0);
+                BigDecimal amount = invocation.getArgument(1);
+                lockRow(accountNumber);
+                if (failCredits.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    throw new CannotAcquireLockException("Lock wait timeout exceeded");
+                }
+                change(accountNumber, amount);
+                return 1;
+            });
+        }
+
+        Object inTransaction(Runnable action) {
+            return inTransaction(() -> {
+                action.run();
+                return null;
+            });
+        }
+
+        <T> T inTransaction(Supplier<T> action) {
+            boolean committed = false;
+            try {
+                T result = action.get();
+                committed = true;
+                return result;
+            } finally {
+                if (!committed) {
+                    List<Runnable> undo = undoLog.get();
+                    for (int i = undo.size() - 1; i >= 0; i--) {
+                        undo.get(i).run();
+                    }
+                }
+                undoLog.get().clear();
+                for (ReentrantLock lock : heldLocks.get()) {
+                    lock.unlock();
+                }
+                heldLocks.get().clear();
+            }
+        }
+
+        BigDecimal total() {
+            return balances.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+
+        private void change(String accountNumber, BigDecimal delta) {
+            balances.merge(accountNumber, delta, BigDecimal::add);
+            undoLog.get().add(() -> balances.merge(accountNumber, delta.negate(), BigDecimal::add));
+        }
+
+        // 行锁可重入，同一事务内重复加锁不会阻塞自己；等锁超时与 innodb_lock_wait_timeout 相同抛出锁获取失败
+        private void lockRow(String accountNumber) {
+            ReentrantLock lock = rowLocks.get(accountNumber);
+            if (lock.isHeldByCurrentThread()) {
+                return;
+            }
+            try {
+                if (!lock.tryLock(lockWaitMillis, TimeUnit.MILLISECONDS)) {
+                    throw new CannotAcquireLockException("Lock wait timeout exceeded");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CannotAcquireLockException("interrupted");
+            }
+            heldLocks.get().add(lock);
+            assertTrue(heldLocks.get().size() <= 2);
+        }
+    }
+}